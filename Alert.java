@@ -8,7 +8,7 @@ public class Alert {
     private final Instant timestamp;
 
     public Alert(String message, String severity, String metric) {
-        this.id = "ALERT-" + System.currentTimeMillis();
+        this.id = IdGenerator.SHARED.next("ALERT");
         this.message = message;
         this.severity = severity;
         this.metric = metric;
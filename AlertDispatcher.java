@@ -0,0 +1,234 @@
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+
+/**
+ * Asynchronous push delivery of alerts to per-recipient channels
+ * (terminal sessions, local sockets, ...).
+ *
+ * dispatch() returns at once with a CompletableFuture of DeliveryStats.
+ * Every recipient's delivery is its own task on a pool of worker threads
+ * fed from a priority queue ordered by the alert's priority, then by
+ * arrival, so the deliveries of a CRITICAL alert overtake those of LOW
+ * alerts still waiting. A delivery that runs past the per-recipient
+ * timeout is counted as timed out and its worker interrupted. If the
+ * channel ignores the interrupt, the pool takes on an extra thread until
+ * it returns, so stuck channels never hold up later deliveries; a channel
+ * that never returns keeps its thread for good.
+ *
+ * Idle worker threads exit after a while, so an unused dispatcher holds
+ * no threads.
+ */
+public class AlertDispatcher<T> implements AutoCloseable {
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(2);
+
+    /** Where one recipient's alerts are pushed */
+    public interface Channel<T> {
+        void deliver(T alert) throws Exception;
+    }
+
+    private final Map<String, Channel<T>> channels = new ConcurrentHashMap<>();
+    private final ToIntFunction<T> priority;
+    private final long timeoutNanos;
+    private final ThreadPoolExecutor workers;
+    private final ScheduledThreadPoolExecutor timeouts;
+    private final AtomicLong sequence = new AtomicLong();
+    private final int threads;
+    private int stuck; // timed-out deliveries still holding a worker (guarded by workers)
+
+    /** @param priority lower is more urgent (e.g. a severity ordinal with CRITICAL first) */
+    public AlertDispatcher(ToIntFunction<T> priority) {
+        this(priority, Math.max(4, 2 * Runtime.getRuntime().availableProcessors()), DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param priority lower is more urgent
+     * @param threads deliveries that may run at once
+     * @param timeout how long one recipient's delivery may take
+     */
+    public AlertDispatcher(ToIntFunction<T> priority, int threads, Duration timeout) {
+        if (threads <= 0) throw new IllegalArgumentException("threads must be > 0");
+        if (timeout == null || timeout.isNegative() || timeout.isZero()) throw new IllegalArgumentException("timeout must be > 0");
+        this.priority = priority;
+        this.threads = threads;
+        this.timeoutNanos = timeout.toNanos();
+        this.workers = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(), daemon("alert-delivery"));
+        workers.allowCoreThreadTimeOut(true);
+        this.timeouts = new ScheduledThreadPoolExecutor(1, daemon("alert-delivery-timeouts"));
+        timeouts.setRemoveOnCancelPolicy(true);
+        timeouts.setKeepAliveTime(30, TimeUnit.SECONDS);
+        timeouts.allowCoreThreadTimeOut(true);
+    }
+
+    public void register(String recipient, Channel<T> channel) {
+        channels.put(recipient, channel);
+    }
+
+    public void unregister(String recipient) {
+        channels.remove(recipient);
+    }
+
+    public int recipientCount() {
+        return channels.size();
+    }
+
+    /** Push an alert to every registered recipient; completes when all have finished */
+    public CompletableFuture<DeliveryStats> dispatch(T alert) {
+        List<Map.Entry<String, Channel<T>>> targets = new ArrayList<>(channels.entrySet());
+        Batch batch = new Batch(targets.size());
+        if (targets.isEmpty()) {
+            batch.complete();
+            return batch.result;
+        }
+        int p = priority.applyAsInt(alert);
+        for (Map.Entry<String, Channel<T>> t : targets) {
+            workers.execute(new Delivery(p, sequence.getAndIncrement(), batch, alert, t.getKey(), t.getValue()));
+        }
+        return batch.result;
+    }
+
+    /** Deliveries queued but not started */
+    public int queuedCount() {
+        return workers.getQueue().size();
+    }
+
+    /** Stop accepting alerts; deliveries already queued still run */
+    @Override
+    public void close() {
+        workers.shutdown();
+        try {
+            workers.awaitTermination(timeoutNanos * 2 + TimeUnit.SECONDS.toNanos(5), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        timeouts.shutdownNow();
+    }
+
+    /** Deliveries that timed out but whose channel has not returned yet */
+    public int stuckCount() {
+        synchronized (workers) {
+            return stuck;
+        }
+    }
+
+    /** Size the pool for the stuck deliveries, so threads are still free for the rest */
+    private void adjustStuck(int delta) {
+        synchronized (workers) {
+            stuck += delta;
+            int size = threads + stuck;
+            if (delta > 0) {
+                workers.setMaximumPoolSize(size);
+                workers.setCorePoolSize(size);
+            } else {
+                workers.setCorePoolSize(size);
+                workers.setMaximumPoolSize(size);
+            }
+        }
+    }
+
+    /** Outcome tracking for one dispatched alert */
+    private static final class Batch {
+        final long startNanos = System.nanoTime();
+        final int recipients;
+        final AtomicInteger remaining;
+        final AtomicInteger delivered = new AtomicInteger();
+        final Queue<String> failed = new ConcurrentLinkedQueue<>();
+        final Queue<String> timedOut = new ConcurrentLinkedQueue<>();
+        final CompletableFuture<DeliveryStats> result = new CompletableFuture<>();
+
+        Batch(int recipients) {
+            this.recipients = recipients;
+            this.remaining = new AtomicInteger(recipients);
+        }
+
+        void finished() {
+            if (remaining.decrementAndGet() == 0) complete();
+        }
+
+        void complete() {
+            result.complete(new DeliveryStats(recipients, delivered.get(), new ArrayList<>(failed),
+                    new ArrayList<>(timedOut), Duration.ofNanos(System.nanoTime() - startNanos)));
+        }
+    }
+
+    /** One recipient's delivery; queued by (priority, arrival) */
+    private final class Delivery implements Runnable, Comparable<Delivery> {
+        final int priority;
+        final long seq;
+        final Batch batch;
+        final T alert;
+        final String recipient;
+        final Channel<T> channel;
+        final AtomicInteger settled = new AtomicInteger(); // 0 until counted once
+        Thread runner;   // guarded by this
+        boolean replaced; // timed out while running, so its worker was replaced (guarded by this)
+
+        Delivery(int priority, long seq, Batch batch, T alert, String recipient, Channel<T> channel) {
+            this.priority = priority;
+            this.seq = seq;
+            this.batch = batch;
+            this.alert = alert;
+            this.recipient = recipient;
+            this.channel = channel;
+        }
+
+        @Override
+        public int compareTo(Delivery o) {
+            return priority != o.priority ? Integer.compare(priority, o.priority) : Long.compare(seq, o.seq);
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                runner = Thread.currentThread();
+            }
+            ScheduledFuture<?> timer = timeouts.schedule(this::timeOut, timeoutNanos, TimeUnit.NANOSECONDS);
+            try {
+                channel.deliver(alert);
+                if (settled.compareAndSet(0, 1)) {
+                    batch.delivered.incrementAndGet();
+                    batch.finished();
+                }
+            } catch (Exception e) {
+                // counted as failed below
+            } finally {
+                timer.cancel(false);
+                if (settled.compareAndSet(0, 1)) { // threw, an Error included
+                    batch.failed.add(recipient);
+                    batch.finished();
+                }
+                synchronized (this) {
+                    runner = null;
+                    if (replaced) adjustStuck(-1);
+                }
+                Thread.interrupted(); // a late timeout must not leak into the next delivery
+            }
+        }
+
+        void timeOut() {
+            if (!settled.compareAndSet(0, 1)) return;
+            synchronized (this) {
+                if (runner != null) {
+                    runner.interrupt();
+                    replaced = true;
+                    adjustStuck(1);
+                }
+            }
+            batch.timedOut.add(recipient);
+            batch.finished();
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,113 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * AlertDispatcherTest — JUnit 4 tests for asynchronous alert push: stats,
+ * per-recipient timeouts and severity ordering.
+ */
+public class AlertDispatcherTest {
+
+    private static int severity(String alert) {
+        return alert.startsWith("CRITICAL") ? 0 : 3;
+    }
+
+    @Test
+    public void statsCountDeliveredFailedAndTimedOut() throws Exception {
+        AlertDispatcher<String> push = new AlertDispatcher<>(AlertDispatcherTest::severity, 4, Duration.ofMillis(200));
+        Queue<String> received = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < 20; i++) {
+            String who = "resident" + i;
+            push.register(who, alert -> received.add(who));
+        }
+        push.register("broken", alert -> { throw new IllegalStateException("socket closed"); });
+        push.register("stuck", alert -> Thread.sleep(60_000));
+
+        DeliveryStats stats = push.dispatch("LOW dust advisory").get(5, TimeUnit.SECONDS);
+
+        assertEquals(22, stats.getRecipients());
+        assertEquals(20, stats.getDelivered());
+        assertEquals(Collections.singletonList("broken"), stats.getFailed());
+        assertEquals(Collections.singletonList("stuck"), stats.getTimedOut());
+        assertFalse(stats.isComplete());
+        assertEquals(20, received.size());
+        push.close();
+    }
+
+    @Test
+    public void noRecipientsCompletesAtOnce() throws Exception {
+        AlertDispatcher<String> push = new AlertDispatcher<>(AlertDispatcherTest::severity);
+        DeliveryStats stats = push.dispatch("LOW test").get(1, TimeUnit.SECONDS);
+        assertEquals(0, stats.getRecipients());
+        assertTrue(stats.isComplete());
+        push.close();
+    }
+
+    @Test
+    public void criticalAlertsOvertakeQueuedLowOnes() throws Exception {
+        AlertDispatcher<String> push = new AlertDispatcher<>(AlertDispatcherTest::severity, 1, Duration.ofSeconds(5));
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        push.register("console", alert -> {
+            if (alert.equals("LOW first")) release.await(); // occupy the only worker
+            order.add(alert);
+        });
+
+        CompletableFuture<DeliveryStats> first = push.dispatch("LOW first");
+        while (push.queuedCount() > 0) Thread.sleep(1); // first is running
+        CompletableFuture<DeliveryStats> low = push.dispatch("LOW second");
+        CompletableFuture<DeliveryStats> critical = push.dispatch("CRITICAL breach");
+        release.countDown();
+        CompletableFuture.allOf(first, low, critical).get(5, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList("LOW first", "CRITICAL breach", "LOW second"), order);
+        push.close();
+    }
+
+    @Test
+    public void channelThrowingAnErrorIsCountedAsFailed() throws Exception {
+        AlertDispatcher<String> push = new AlertDispatcher<>(AlertDispatcherTest::severity, 1, Duration.ofSeconds(5));
+        push.register("broken", alert -> { throw new AssertionError("bad terminal driver"); });
+        push.register("console", alert -> { });
+
+        DeliveryStats stats = push.dispatch("LOW dust advisory").get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, stats.getDelivered());
+        assertEquals(Collections.singletonList("broken"), stats.getFailed());
+        push.close();
+    }
+
+    @Test
+    public void channelsIgnoringInterruptsDoNotStallLaterAlerts() throws Exception {
+        AlertDispatcher<String> push = new AlertDispatcher<>(AlertDispatcherTest::severity, 2, Duration.ofMillis(100));
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 2; i++) {
+            push.register("deaf" + i, alert -> {
+                if (!alert.startsWith("LOW")) return;
+                while (true) {
+                    try {
+                        release.await();
+                        return;
+                    } catch (InterruptedException ignored) {
+                        // keeps waiting
+                    }
+                }
+            });
+        }
+        DeliveryStats low = push.dispatch("LOW dust advisory").get(5, TimeUnit.SECONDS);
+        assertEquals(2, low.getTimedOut().size());
+        assertEquals(2, push.stuckCount());
+
+        DeliveryStats critical = push.dispatch("CRITICAL breach").get(5, TimeUnit.SECONDS);
+        assertTrue("both pool threads are still stuck, yet it got through", critical.isComplete());
+
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (push.stuckCount() > 0 && System.nanoTime() < deadline) Thread.sleep(5);
+        assertEquals(0, push.stuckCount());
+        push.close();
+    }
+}
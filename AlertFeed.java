@@ -0,0 +1,267 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+
+/**
+ * Shared append-only log of alerts with a read cursor per subscriber
+ * (fan-out on read).
+ *
+ * Broadcasting is one append no matter how many subscribers there are;
+ * nobody's inbox is touched. Each subscriber only remembers where it
+ * joined the feed (it sees broadcasts from then on) and how far it has
+ * read. An alert meant for one subscriber goes into that subscriber's own
+ * inbox instead, tagged with the feed position it was sent at so reads
+ * interleave it with the broadcasts in order; nobody else ever walks past
+ * it.
+ *
+ * Entries live in fixed-size chunks that are never copied once written.
+ * Appends are serialised; reads take no lock: an appender fills its slot
+ * and only then publishes the new length, so a reader that sees the length
+ * also sees every entry below it.
+ *
+ * Retention: the feed keeps the most recent retained broadcasts (rounded
+ * up to whole chunks) and each inbox its most recent retained items.
+ * Older ones are dropped unless the keep predicate still holds for them;
+ * a subscriber that falls further behind skips the rest, and
+ * missedCount() tells it how many. Positions (length(), cursors) keep
+ * counting from the first broadcast ever.
+ */
+public class AlertFeed<T> {
+    public static final int DEFAULT_RETAINED = 1 << 16;
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK = 1 << CHUNK_BITS;
+
+    /** An item sent to one subscriber, after the broadcasts below at */
+    private static final class Direct<T> {
+        final long at;
+        final T item;
+
+        Direct(long at, T item) {
+            this.at = at;
+            this.item = item;
+        }
+    }
+
+    private static final class Cursor<T> {
+        final long joinedAt;
+        long readUpTo;                                   // guarded by this
+        final ArrayDeque<Direct<T>> inbox = new ArrayDeque<>(); // guarded by this
+        int unreadDirect;                                // newest items of inbox not yet polled
+        long missed;                                     // dropped before they were polled (guarded by this)
+
+        Cursor(long joinedAt) {
+            this.joinedAt = joinedAt;
+            this.readUpTo = joinedAt;
+        }
+    }
+
+    private final int retained;
+    private final Predicate<? super T> keep;
+    private volatile Object[][] chunks = new Object[16][];
+    private volatile long length;
+    private volatile long base; // first position still held in chunks
+    private final NavigableMap<Long, T> kept = new ConcurrentSkipListMap<>(); // below base, by position
+    private final Map<String, Cursor<T>> cursors = new ConcurrentHashMap<>();
+
+    public AlertFeed() {
+        this(DEFAULT_RETAINED);
+    }
+
+    /** @param retained broadcasts (and items per inbox) kept before the oldest are dropped */
+    public AlertFeed(int retained) {
+        this(retained, item -> false);
+    }
+
+    /**
+     * @param retained broadcasts (and items per inbox) kept before the oldest are dropped
+     * @param keep items held past retention for as long as it holds (checked whenever a chunk expires)
+     */
+    public AlertFeed(int retained, Predicate<? super T> keep) {
+        if (retained <= 0) throw new IllegalArgumentException("retained must be > 0");
+        this.retained = retained;
+        this.keep = keep;
+    }
+
+    /** Start following the feed from its current end; no-op if already subscribed */
+    public void subscribe(String subscriber) {
+        cursors.computeIfAbsent(subscriber, k -> new Cursor<>(length));
+    }
+
+    public boolean isSubscribed(String subscriber) {
+        return cursors.containsKey(subscriber);
+    }
+
+    public int subscriberCount() {
+        return cursors.size();
+    }
+
+    /** Current subscribers (a snapshot, built on demand) */
+    public List<String> subscribers() {
+        return new ArrayList<>(cursors.keySet());
+    }
+
+    /** Append an item for every current subscriber; returns its position */
+    public long publish(T item) {
+        return append(item);
+    }
+
+    /** Send an item to one subscriber, subscribing it first if need be */
+    public void publishTo(String subscriber, T item) {
+        subscribe(subscriber);
+        Cursor<T> c = cursors.get(subscriber);
+        synchronized (c) {
+            c.inbox.addLast(new Direct<>(length, item));
+            c.unreadDirect++;
+            if (c.inbox.size() > retained) dropOldest(c);
+        }
+    }
+
+    /** Drop the oldest inbox item not kept; if every item is kept the inbox grows instead */
+    private void dropOldest(Cursor<T> c) {
+        int read = c.inbox.size() - c.unreadDirect;
+        int i = 0;
+        for (Iterator<Direct<T>> it = c.inbox.iterator(); it.hasNext(); i++) {
+            if (keep.test(it.next().item)) continue;
+            it.remove();
+            if (i >= read) {
+                c.unreadDirect--;
+                c.missed++;
+            }
+            return;
+        }
+    }
+
+    /** Every item the subscriber can see that is still retained, oldest first (empty if not subscribed) */
+    public List<T> itemsFor(String subscriber) {
+        Cursor<T> c = cursors.get(subscriber);
+        if (c == null) return new ArrayList<>();
+        synchronized (c) {
+            return read(c.joinedAt, length, c.inbox, c.inbox.size());
+        }
+    }
+
+    /** Items the subscriber has not read yet, oldest first; marks them read */
+    public List<T> poll(String subscriber) {
+        Cursor<T> c = cursors.get(subscriber);
+        if (c == null) return new ArrayList<>();
+        synchronized (c) {
+            long end = length;
+            c.missed += expiredBefore(c.readUpTo);
+            List<T> out = read(c.readUpTo, end, c.inbox, c.unreadDirect);
+            c.readUpTo = Math.max(c.readUpTo, end);
+            c.unreadDirect = 0;
+            return out;
+        }
+    }
+
+    /** How many items the subscriber has not read yet (expired ones excluded) */
+    public int unreadCount(String subscriber) {
+        Cursor<T> c = cursors.get(subscriber);
+        if (c == null) return 0;
+        synchronized (c) {
+            long b = base;
+            long keptUnread = c.readUpTo < b ? kept.subMap(c.readUpTo, b).size() : 0;
+            return (int) (Math.max(0, length - Math.max(c.readUpTo, b)) + keptUnread) + c.unreadDirect;
+        }
+    }
+
+    /** How many items expired before the subscriber read them (0 if not subscribed) */
+    public long missedCount(String subscriber) {
+        Cursor<T> c = cursors.get(subscriber);
+        if (c == null) return 0;
+        synchronized (c) {
+            return c.missed + expiredBefore(c.readUpTo);
+        }
+    }
+
+    /** Broadcasts from position from on that are gone for good */
+    private long expiredBefore(long from) {
+        long b = base;
+        return from < b ? (b - from) - kept.subMap(from, b).size() : 0;
+    }
+
+    /** Broadcasts appended so far, including expired ones */
+    public long length() {
+        return length;
+    }
+
+    private synchronized long append(T item) {
+        long pos = length;
+        int chunk = (int) (pos >>> CHUNK_BITS);
+        Object[][] dir = chunks;
+        if (chunk == dir.length) dir = Arrays.copyOf(dir, dir.length * 2);
+        if (dir[chunk] == null) dir[chunk] = new Object[CHUNK];
+        dir[chunk][(int) (pos & (CHUNK - 1))] = item;
+        chunks = dir;
+        length = pos + 1; // publish: everything above is visible to readers that see this
+        if ((pos & (CHUNK - 1)) == CHUNK - 1) expire(pos + 1);
+        return pos;
+    }
+
+    /**
+     * Drop whole chunks that are more than retained positions behind end,
+     * moving the items keep still holds for aside first (and letting go of
+     * those moved aside earlier that it no longer holds for)
+     */
+    private void expire(long end) {
+        long keepFrom = ((end - retained) >> CHUNK_BITS) << CHUNK_BITS;
+        if (keepFrom <= base) return;
+        kept.values().removeIf(item -> !keep.test(item));
+        Object[][] dir = chunks;
+        for (long c = base >>> CHUNK_BITS; c < keepFrom >>> CHUNK_BITS; c++) {
+            Object[] chunk = dir[(int) c];
+            for (int i = 0; i < CHUNK; i++) {
+                @SuppressWarnings("unchecked")
+                T item = (T) chunk[i];
+                if (keep.test(item)) kept.put((c << CHUNK_BITS) + i, item);
+            }
+            dir[(int) c] = null; // after the copy: a reader that finds it gone looks in kept
+        }
+        base = keepFrom;
+    }
+
+    /**
+     * Broadcasts in [from, to) merged with the newest count inbox items
+     * (each placed after the broadcasts below its position)
+     */
+    private List<T> read(long from, long to, ArrayDeque<Direct<T>> inbox, int count) {
+        List<T> out = new ArrayList<>();
+        Iterator<Direct<T>> direct = inbox.iterator();
+        for (int skip = inbox.size() - count; skip > 0; skip--) direct.next();
+        Direct<T> next = direct.hasNext() ? direct.next() : null;
+        long b = base;
+        if (from < Math.min(b, to)) {
+            for (Map.Entry<Long, T> e : kept.subMap(from, Math.min(b, to)).entrySet()) {
+                while (next != null && next.at <= e.getKey()) {
+                    out.add(next.item);
+                    next = direct.hasNext() ? direct.next() : null;
+                }
+                out.add(e.getValue());
+            }
+        }
+        Object[][] dir = chunks;
+        for (long i = Math.max(from, b); i < to; i++) {
+            while (next != null && next.at <= i) {
+                out.add(next.item);
+                next = direct.hasNext() ? direct.next() : null;
+            }
+            Object[] chunk = dir[(int) (i >>> CHUNK_BITS)];
+            T item;
+            if (chunk != null) {
+                @SuppressWarnings("unchecked")
+                T held = (T) chunk[(int) (i & (CHUNK - 1))];
+                item = held;
+            } else if ((item = kept.get(i)) == null) {
+                continue; // expired while we read
+            }
+            out.add(item);
+        }
+        while (next != null) {
+            out.add(next.item);
+            next = direct.hasNext() ? direct.next() : null;
+        }
+        return out;
+    }
+}
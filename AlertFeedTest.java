@@ -0,0 +1,134 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+/**
+ * AlertFeedTest — JUnit 4 tests for the shared alert log with per-user
+ * read cursors.
+ */
+public class AlertFeedTest {
+
+    @Test
+    public void broadcastReachesOnlyUsersSubscribedBeforeIt() {
+        AlertFeed<String> feed = new AlertFeed<>();
+        feed.subscribe("ada");
+        feed.publish("dust storm");
+        feed.subscribe("bob");
+        feed.publish("breach");
+
+        assertEquals(Arrays.asList("dust storm", "breach"), feed.itemsFor("ada"));
+        assertEquals(Collections.singletonList("breach"), feed.itemsFor("bob"));
+        assertTrue(feed.itemsFor("cy").isEmpty());
+        assertEquals(2, feed.length());
+    }
+
+    @Test
+    public void targetedItemsAreSeenByTheirRecipientOnly() {
+        AlertFeed<String> feed = new AlertFeed<>();
+        feed.subscribe("ada");
+        feed.publishTo("bob", "check valve 7");
+        feed.publish("all clear");
+
+        assertEquals(Collections.singletonList("all clear"), feed.itemsFor("ada"));
+        assertEquals(Arrays.asList("check valve 7", "all clear"), feed.itemsFor("bob"));
+    }
+
+    @Test
+    public void pollAdvancesTheReadCursor() {
+        AlertFeed<String> feed = new AlertFeed<>();
+        feed.subscribe("ada");
+        for (int i = 0; i < 3_000; i++) feed.publish("alert " + i); // spans several chunks
+        assertEquals(3_000, feed.unreadCount("ada"));
+
+        List<String> first = feed.poll("ada");
+        assertEquals(3_000, first.size());
+        assertEquals("alert 2999", first.get(2_999));
+        assertTrue(feed.poll("ada").isEmpty());
+
+        feed.publishTo("bob", "not for ada");
+        feed.publish("alert 3000");
+        assertEquals(1, feed.unreadCount("ada"));
+        assertEquals(Collections.singletonList("alert 3000"), feed.poll("ada"));
+    }
+
+    @Test
+    public void readersSeeCompleteEntriesWhileWritersAppend() throws Exception {
+        AlertFeed<Integer> feed = new AlertFeed<>();
+        feed.subscribe("reader");
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 5_000; i++) feed.publish(i);
+            });
+            writers[t].start();
+        }
+        int seen = 0;
+        while (seen < 20_000) {
+            for (Integer item : feed.poll("reader")) {
+                assertNotNull(item);
+                seen++;
+            }
+        }
+        for (Thread w : writers) w.join();
+        assertEquals(20_000, feed.length());
+    }
+
+    @Test
+    public void targetedItemsInterleaveWithBroadcastsInOrder() {
+        AlertFeed<String> feed = new AlertFeed<>();
+        feed.subscribe("ada");
+        feed.publish("b0");
+        feed.publishTo("ada", "d0");
+        feed.publishTo("bob", "not for ada");
+        feed.publish("b1");
+        feed.publishTo("ada", "d1");
+
+        assertEquals(4, feed.unreadCount("ada"));
+        assertEquals(Arrays.asList("b0", "d0", "b1", "d1"), feed.poll("ada"));
+        feed.publishTo("ada", "d2");
+        feed.publish("b2");
+        assertEquals(Arrays.asList("d2", "b2"), feed.poll("ada"));
+        assertEquals(Arrays.asList("b0", "d0", "b1", "d1", "d2", "b2"), feed.itemsFor("ada"));
+        assertEquals(3, feed.length());
+    }
+
+    @Test
+    public void oldBroadcastsAndInboxItemsExpire() {
+        AlertFeed<Integer> feed = new AlertFeed<>(2_048);
+        feed.subscribe("ada");
+        for (int i = 0; i < 10_000; i++) feed.publish(i);
+        for (int i = 0; i < 5_000; i++) feed.publishTo("ada", -i);
+
+        List<Integer> kept = feed.itemsFor("ada");
+        assertEquals(2_832 + 2_048, kept.size()); // broadcasts 7,168.. (whole chunks) + newest inbox items
+        assertEquals(Integer.valueOf(7_168), kept.get(0));
+        assertEquals(Integer.valueOf(-4_999), kept.get(kept.size() - 1));
+        assertEquals(kept.size(), feed.unreadCount("ada"));
+        assertEquals(7_168 + 2_952, feed.missedCount("ada"));
+        assertEquals(kept, feed.poll("ada"));
+        assertEquals(7_168 + 2_952, feed.missedCount("ada"));
+        assertEquals(10_000, feed.length());
+    }
+
+    @Test
+    public void keptItemsOutliveRetentionUntilReleased() {
+        Set<Integer> open = new HashSet<>(Arrays.asList(5, 3_000));
+        AlertFeed<Integer> feed = new AlertFeed<>(2_048, open::contains);
+        feed.subscribe("ada");
+        feed.publishTo("ada", 5);
+        for (int i = 0; i < 10_000; i++) feed.publish(i);
+        for (int i = 0; i < 3_000; i++) feed.publishTo("ada", -i);
+
+        List<Integer> items = feed.poll("ada");
+        assertEquals(Arrays.asList(5, 5, 3_000, 7_168), items.subList(0, 4));
+        assertEquals(3 + 2_832 + 2_047, items.size()); // the kept inbox item takes one of the 2,048 slots
+        assertEquals((7_168 - 2) + (3_000 - 2_047), feed.missedCount("ada"));
+
+        open.clear(); // e.g. resolved
+        for (int i = 0; i < 2_048; i++) feed.publish(i);
+        List<Integer> later = feed.itemsFor("ada");
+        assertEquals(Arrays.asList(5, 9_216), later.subList(0, 2)); // released once the next chunk expired
+        assertFalse(later.contains(3_000));
+    }
+}
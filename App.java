@@ -5,7 +5,7 @@ private TechnicianService technicianService;
 
 // Update the bootstrap method
 private void bootstrap() {
-    store.seedSamples();
+    if (store.isEmpty()) store.seedSamples(); // a persistent store keeps its roster
     auth = new AuthService(store.backingMap(), 5, Duration.ofMinutes(15));
     schedule = new ScheduleService();
     backup = new BackupService();
@@ -13,6 +13,9 @@ private void bootstrap() {
     
     // Sprint 3 services
     emergencyService = new EmergencyService();
+    for (String username : store.search().findUsernames(null, null, null, Integer.MAX_VALUE)) {
+        emergencyService.registerRecipient(username);
+    }
     taskAssignmentService = new TaskAssignmentService();
     technicianService = new TechnicianService();
     
@@ -54,12 +57,14 @@ private void doEmergencyAlert() {
     int severityChoice = Input.intRange("Select severity (1-4): ", 1, 4);
     Severity severity = getSeverityFromChoice(severityChoice);
     
-    // Broadcast alert
-    List<String> deliveredUsers = emergencyService.broadcastEmergencyAlert(
-        alertType, message, severity, currentUser.userId);
+    // Broadcast alert (one append to the shared feed); live sessions are pushed in the background
+    emergencyService.broadcastAsync(alertType, message, severity, currentUser.userId)
+        .thenAccept(stats -> {
+            if (!stats.isComplete()) System.out.println("\n⚠ Emergency alert push: " + stats);
+        });
     
     System.out.println("\n🚨 EMERGENCY ALERT BROADCAST!");
-    System.out.println("Alert sent to " + deliveredUsers.size() + " users.");
+    System.out.println("Alert sent to " + emergencyService.getRecipientCount() + " users.");
     System.out.println("All users have been notified.");
     Input.pause();
 }
@@ -77,14 +82,21 @@ private void doAssignTask() {
     
     System.out.println("\n=== TASK ASSIGNMENT ===");
     
-    // Get available residents (simplified - in real system would query user store)
+    // Active residents from the user store, optionally narrowed by username prefix
+    String prefix = Input.line("Resident username starts with (Enter for all): ");
+    List<String> residents = store.search().findUsernames(prefix, Role.COLONY_RESIDENT, AccountStatus.ACTIVE, 9);
+    if (residents.isEmpty()) {
+        System.out.println("No active residents match '" + prefix + "'.");
+        Input.pause();
+        return;
+    }
     System.out.println("Available Residents:");
-    System.out.println("1) resident.valid@mars.local");
-    System.out.println("2) resident2@mars.local");
-    System.out.println("3) resident3@mars.local");
+    for (int i = 0; i < residents.size(); i++) {
+        System.out.println((i + 1) + ") " + residents.get(i));
+    }
     
-    int residentChoice = Input.intRange("Select resident (1-3): ", 1, 3);
-    String assigneeUsername = getResidentUsername(residentChoice);
+    int residentChoice = Input.intRange("Select resident (1-" + residents.size() + "): ", 1, residents.size());
+    String assigneeUsername = residents.get(residentChoice - 1);
     
     String taskTitle = Input.line("Enter task title: ");
     int priority = Input.intRange("Enter priority (1=High, 5=Low): ", 1, 5);
@@ -266,15 +278,6 @@ private Severity getSeverityFromChoice(int choice) {
     }
 }
 
-private String getResidentUsername(int choice) {
-    switch (choice) {
-        case 1: return "resident.valid@mars.local";
-        case 2: return "resident2@mars.local";
-        case 3: return "resident3@mars.local";
-        default: return "resident.valid@mars.local";
-    }
-}
-
 private SystemComponent getSystemComponentFromChoice(int choice) {
     switch (choice) {
         case 1: return SystemComponent.LIFE_SUPPORT;
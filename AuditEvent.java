@@ -0,0 +1,52 @@
+import java.time.Instant;
+
+/**
+ * One authentication audit record: what happened, to whom and when.
+ * Kept as plain fields so recording it on the login path costs one small
+ * allocation; the text form is only built when it is read or written out.
+ */
+public final class AuditEvent {
+
+    public enum Type {
+        LOGIN_SUCCESS,
+        EMPTY_USERNAME,
+        UNKNOWN_USER,
+        EXPIRED,
+        LOCKED,
+        BAD_PASSWORD,
+        ACCOUNT_LOCKED
+    }
+
+    public final Type type;
+    public final String userId;   // null if the username did not match a user
+    public final String username; // as given at login for UNKNOWN_USER
+    public final int attempt;     // failed-attempt count for BAD_PASSWORD, else 0
+    public final long epochMillis;
+
+    public AuditEvent(Type type, String userId, String username, int attempt, long epochMillis) {
+        this.type = type;
+        this.userId = userId;
+        this.username = username;
+        this.attempt = attempt;
+        this.epochMillis = epochMillis;
+    }
+
+    public Instant timestamp() {
+        return Instant.ofEpochMilli(epochMillis);
+    }
+
+    /** Text form, as the audit log has always printed it */
+    @Override
+    public String toString() {
+        switch (type) {
+            case LOGIN_SUCCESS:  return "SUCCESS:" + username;
+            case EMPTY_USERNAME: return "FAIL empty-username";
+            case UNKNOWN_USER:   return "FAIL unknown-user:" + username;
+            case EXPIRED:        return "FAIL expired:" + username;
+            case LOCKED:         return "FAIL locked:" + username;
+            case BAD_PASSWORD:   return "FAIL bad-password:" + username + ":attempt=" + attempt;
+            case ACCOUNT_LOCKED: return "LOCKED:" + username;
+            default:             return type.name();
+        }
+    }
+}
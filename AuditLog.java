@@ -0,0 +1,239 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Audit trail for AuthService.
+ *
+ * record() is cheap and never blocks: it drops the event into a fixed-size
+ * ring buffer that serves recent() queries, and (when a file is configured)
+ * hands it to a bounded lock-free queue. A background writer drains the
+ * queue in batches, formats them and appends them to a log file that is
+ * rotated before a batch would take it past a size limit
+ * (audit.log, audit.log.1, ... audit.log.N).
+ * If the writer falls behind and the queue is full, events are counted as
+ * dropped rather than holding up logins.
+ *
+ * After a failed write the file stops: later events only reach the ring
+ * buffer and count as dropped, flush() and close() throw, and getFailure()
+ * tells why.
+ */
+public class AuditLog implements AutoCloseable {
+    public static final int DEFAULT_RECENT = 4096;
+
+    private static final int BATCH = 512;
+
+    // Recent events, newest at (written - 1)
+    private final AtomicReferenceArray<AuditEvent> ring;
+    private final int mask;
+    private final AtomicLong written = new AtomicLong();
+
+    // Hand-off to the file writer; null when the log is memory-only
+    private final Queue<AuditEvent> pending;
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final int queueCapacity;
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Path file;
+    private final long maxFileBytes;
+    private final int keepFiles;
+    private final ScheduledExecutorService writer;
+    private FileChannel channel; // guarded by this
+    private volatile IOException failure;
+
+    /** Memory-only log keeping the most recent events */
+    public AuditLog(int recentCapacity) {
+        this.ring = new AtomicReferenceArray<>(powerOfTwo(recentCapacity));
+        this.mask = ring.length() - 1;
+        this.pending = null;
+        this.queueCapacity = 0;
+        this.file = null;
+        this.maxFileBytes = 0;
+        this.keepFiles = 0;
+        this.writer = null;
+    }
+
+    /**
+     * @param file current log file (created if missing)
+     * @param maxFileBytes size at which the file is rotated
+     * @param keepFiles rotated files to keep besides the current one
+     * @param queueCapacity events that may wait for the writer before new ones are dropped
+     * @param flushIntervalMillis how often the writer drains the queue
+     */
+    public AuditLog(int recentCapacity, Path file, long maxFileBytes, int keepFiles,
+                    int queueCapacity, long flushIntervalMillis) throws IOException {
+        if (maxFileBytes <= 0) throw new IllegalArgumentException("maxFileBytes must be > 0");
+        if (keepFiles < 0) throw new IllegalArgumentException("keepFiles must be >= 0");
+        if (queueCapacity <= 0) throw new IllegalArgumentException("queueCapacity must be > 0");
+        if (flushIntervalMillis <= 0) throw new IllegalArgumentException("flushIntervalMillis must be > 0");
+        this.ring = new AtomicReferenceArray<>(powerOfTwo(recentCapacity));
+        this.mask = ring.length() - 1;
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.queueCapacity = queueCapacity;
+        this.file = file;
+        this.maxFileBytes = maxFileBytes;
+        this.keepFiles = keepFiles;
+        this.channel = openForAppend(file);
+
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "auth-audit-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        writer.scheduleWithFixedDelay(this::backgroundDrain,
+                flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Record one event; never blocks */
+    public void record(AuditEvent event) {
+        ring.set((int) (written.getAndIncrement() & mask), event);
+        if (pending == null) return;
+        if (failure != null || pendingCount.incrementAndGet() > queueCapacity) {
+            pendingCount.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        pending.offer(event);
+    }
+
+    /** Up to limit most recent events, oldest first */
+    public List<AuditEvent> recent(int limit) {
+        long end = written.get();
+        int n = (int) Math.min(Math.min(limit, end), ring.length());
+        List<AuditEvent> out = new ArrayList<>(n);
+        for (long i = end - n; i < end; i++) {
+            AuditEvent e = ring.get((int) (i & mask));
+            if (e != null) out.add(e);
+        }
+        return out;
+    }
+
+    /** Events recorded since this log was created */
+    public long recordedCount() {
+        return written.get();
+    }
+
+    /** Events not written to file because the queue was full or the file had failed */
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    /** Why the file stopped taking events, or null while it is healthy */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /** Write out everything queued so far (no-op for a memory-only log) */
+    public void flush() {
+        if (pending == null) return;
+        synchronized (this) {
+            drain();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (writer == null) return;
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                drain();
+            } finally {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("audit log close failed: " + file, e);
+                }
+            }
+        }
+    }
+
+    private void backgroundDrain() {
+        try {
+            synchronized (this) {
+                drain();
+            }
+        } catch (UncheckedIOException e) {
+            writer.shutdown(); // the failure is recorded; nothing more gets written
+        }
+    }
+
+    private void drain() {
+        IOException f = failure;
+        if (f != null) throw new UncheckedIOException("audit log stopped after a failed write: " + file, f);
+        StringBuilder batch = new StringBuilder();
+        while (true) {
+            int n = 0;
+            AuditEvent e;
+            while (n < BATCH && (e = pending.poll()) != null) {
+                pendingCount.decrementAndGet();
+                batch.append(Instant.ofEpochMilli(e.epochMillis)).append(' ')
+                     .append(e.userId == null ? "-" : e.userId).append(' ')
+                     .append(e).append('\n');
+                n++;
+            }
+            if (n == 0) return;
+            write(batch.toString().getBytes(StandardCharsets.UTF_8));
+            batch.setLength(0);
+        }
+    }
+
+    private void write(byte[] bytes) {
+        try {
+            if (channel.size() > 0 && channel.size() + bytes.length > maxFileBytes) rotate();
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            while (buf.hasRemaining()) channel.write(buf);
+            channel.force(false);
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException("audit log write failed: " + file, e);
+        }
+    }
+
+    /** audit.log -> audit.log.1 -> ... -> audit.log.keepFiles (oldest dropped) */
+    private void rotate() throws IOException {
+        channel.close();
+        if (keepFiles == 0) {
+            Files.deleteIfExists(file);
+        } else {
+            Files.deleteIfExists(rotated(keepFiles));
+            for (int i = keepFiles - 1; i >= 1; i--) {
+                Path from = rotated(i);
+                if (Files.exists(from)) Files.move(from, rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        channel = openForAppend(file);
+    }
+
+    private Path rotated(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    private static FileChannel openForAppend(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static int powerOfTwo(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("recentCapacity must be > 0");
+        return capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    }
+}
@@ -0,0 +1,90 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * AuditLogTest — JUnit 4 tests for the recent-events ring buffer and the
+ * batched, rotating audit file.
+ */
+public class AuditLogTest {
+
+    private static AuditEvent event(int attempt) {
+        return new AuditEvent(AuditEvent.Type.BAD_PASSWORD, "U1001", "resident.valid@mars.local", attempt, 0L);
+    }
+
+    @Test
+    public void ringKeepsOnlyTheNewestEvents() {
+        AuditLog log = new AuditLog(8);
+        for (int i = 1; i <= 20; i++) log.record(event(i));
+
+        List<AuditEvent> recent = log.recent(100);
+        assertEquals(8, recent.size());
+        assertEquals(13, recent.get(0).attempt);
+        assertEquals(20, recent.get(7).attempt);
+        assertEquals(2, log.recent(2).size());
+        assertEquals(20, log.recordedCount());
+        assertEquals("FAIL bad-password:resident.valid@mars.local:attempt=20", recent.get(7).toString());
+    }
+
+    @Test
+    public void writerBatchesIntoRotatingFiles() throws Exception {
+        Path dir = Files.createTempDirectory("audit");
+        Path file = dir.resolve("audit.log");
+        try (AuditLog log = new AuditLog(16, file, 400, 2, 10_000, 60_000)) {
+            for (int i = 1; i <= 30; i++) {
+                log.record(event(i));
+                if (i % 4 == 0) log.flush();
+            }
+        }
+
+        assertTrue(Files.exists(file));
+        assertTrue(Files.exists(dir.resolve("audit.log.1")));
+        assertTrue(Files.exists(dir.resolve("audit.log.2")));
+        assertFalse(Files.exists(dir.resolve("audit.log.3")));
+        List<String> current = Files.readAllLines(file);
+        assertTrue(current.get(current.size() - 1).endsWith("U1001 FAIL bad-password:resident.valid@mars.local:attempt=30"));
+        assertTrue(Files.size(file) <= 400);
+    }
+
+    @Test
+    public void fullQueueDropsInsteadOfBlocking() throws Exception {
+        Path file = Files.createTempFile("audit", ".log");
+        try (AuditLog log = new AuditLog(16, file, 1 << 20, 0, 10, 60_000)) {
+            for (int i = 1; i <= 25; i++) log.record(event(i));
+            assertEquals(15, log.droppedCount());
+            log.flush();
+            assertEquals(10, Files.readAllLines(file).size());
+            assertEquals(16, log.recent(100).size()); // the ring still saw everything recent
+        }
+    }
+
+    @Test
+    public void failedWriteStopsTheFileAndIsReported() throws Exception {
+        Path dir = Files.createTempDirectory("audit");
+        Path file = dir.resolve("audit.log");
+        Files.createDirectories(dir.resolve("audit.log.1").resolve("in-the-way")); // rotation cannot replace it
+        AuditLog log = new AuditLog(16, file, 100, 1, 10_000, 60_000);
+        log.record(event(1));
+        log.flush();
+        log.record(event(2));
+        log.record(event(3));
+        try {
+            log.flush();
+            fail("rotation should fail");
+        } catch (UncheckedIOException expected) {
+        }
+        assertNotNull(log.getFailure());
+
+        log.record(event(4));
+        assertEquals(1, log.droppedCount());
+        assertEquals(4, log.recent(100).size());
+        try {
+            log.close();
+            fail("close should report the failure");
+        } catch (UncheckedIOException expected) {
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AuthBenchmark — rough login/logout throughput at increasing thread counts,
+ * followed by a contention check that hammers one account with bad
+ * passwords and confirms it locks after exactly maxAttempts failures.
+ * Run from BlueJ (void main) or the command line; numbers are indicative
+ * only, so compare runs on the same machine.
+ */
+public class AuthBenchmark {
+
+    private static final int USERS = 10_000;
+    private static final int LOGINS_PER_THREAD = 500_000;
+    private static final int MAX_ATTEMPTS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("=== Login throughput (" + LOGINS_PER_THREAD + " logins/thread, " + cores + " cores) ===");
+        long base = 0;
+        for (int threads = 1; threads <= Math.max(1, cores); threads *= 2) {
+            long rate = throughput(threads);
+            if (base == 0) base = rate;
+            System.out.printf("%2d threads :: %,d logins/s :: scaling %.2fx%n", threads, rate, (double) rate / base);
+        }
+        lockoutUnderContention(Math.max(4, cores));
+    }
+
+    private static long throughput(int threads) throws Exception {
+        // Cheap hashing so registering every user does not dominate;
+        // PasswordHashBenchmark covers hashing cost on its own
+        PasswordHasher hasher = new PasswordHasher(1_000);
+        UserStore store = new UserStore(hasher);
+        String[] names = new String[USERS];
+        for (int i = 0; i < USERS; i++) {
+            names[i] = store.addNew("bench." + i + "@mars.local", "pw" + i, AccountStatus.ACTIVE, Role.COLONY_RESIDENT).username;
+        }
+        AuthService auth = new AuthService(store.backingMap(), MAX_ATTEMPTS, Duration.ofMinutes(15),
+                new AuditLog(AuditLog.DEFAULT_RECENT), hasher,
+                new VerifiedCredentialCache(Duration.ofMinutes(5), USERS), LoginRateLimiter.unlimited());
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> done = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            done.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < LOGINS_PER_THREAD; i++) {
+                    int u = (offset * 7919 + i) % USERS;
+                    auth.logout(auth.authenticate(names[u], "pw" + u).sessionToken);
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> f : done) f.get();
+        long elapsed = System.nanoTime() - begin;
+        pool.shutdown();
+        return (long) threads * LOGINS_PER_THREAD * 1_000_000_000L / Math.max(1, elapsed);
+    }
+
+    private static void lockoutUnderContention(int threads) throws Exception {
+        UserStore store = new UserStore();
+        store.seedSamples();
+        AuthService auth = new AuthService(store.backingMap(), MAX_ATTEMPTS, Duration.ofMinutes(15),
+                new AuditLog(AuditLog.DEFAULT_RECENT), new PasswordHasher(), new VerifiedCredentialCache(),
+                LoginRateLimiter.unlimited());
+        AtomicInteger badPasswords = new AtomicInteger();
+        AtomicInteger lockouts = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> done = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            done.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 10_000; i++) {
+                    LoginResult r = auth.authenticate("resident.valid@mars.local", "wrong");
+                    if (r.outcome == LoginResult.Outcome.BAD_PASSWORD) badPasswords.incrementAndGet();
+                    if (r.outcome == LoginResult.Outcome.LOCKED_OUT) lockouts.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : done) f.get();
+        pool.shutdown();
+
+        User u = store.get("resident.valid@mars.local");
+        boolean exact = badPasswords.get() == MAX_ATTEMPTS - 1 && lockouts.get() == 1
+                && u.failedAttempts == MAX_ATTEMPTS && u.status == AccountStatus.LOCKED;
+        System.out.println("=== Lockout under contention (" + threads + " threads) ===");
+        System.out.println("failed before lock=" + (badPasswords.get() + lockouts.get())
+                + " lockouts=" + lockouts.get() + " status=" + u.status
+                + (exact ? " :: OK" : " :: MISMATCH (expected " + MAX_ATTEMPTS + " failures, 1 lockout)"));
+    }
+}
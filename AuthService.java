@@ -1,80 +1,206 @@
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
-/** In-memory authentication + sessions + simple audit. */
+/**
+ * In-memory authentication + sessions + simple audit; safe for concurrent
+ * logins, with attempts rate-limited and passwords checked against hashes.
+ */
 public class AuthService {
+    // Each user's attempt counter and status change run under one of these,
+    // so the lockout stays exact while logins for different users rarely contend
+    private static final int STRIPES = 64; // power of two
+
     private final Map<String, User> users; // keyed by normalized username (see UserStore)
     private final int maxAttempts;
     private final Duration sessionTimeout;
-    private final List<String> audit = new ArrayList<>();
-    private String lastError = null;
+    private final AuditLog audit;
+    private final PasswordHasher hasher;
+    private final VerifiedCredentialCache verified;
+    private final LoginRateLimiter limiter;
+    private final AtomicLong throttled = new AtomicLong();
+    private final Object[] stripes = new Object[STRIPES];
+    private final SessionRegistry sessions;
 
     public AuthService(Map<String, User> users, int maxAttempts, Duration sessionTimeout) {
+        this(users, maxAttempts, sessionTimeout, new AuditLog(AuditLog.DEFAULT_RECENT));
+    }
+
+    public AuthService(Map<String, User> users, int maxAttempts, Duration sessionTimeout, AuditLog audit) {
+        this(users, maxAttempts, sessionTimeout, audit, new PasswordHasher(), new VerifiedCredentialCache());
+    }
+
+    public AuthService(Map<String, User> users, int maxAttempts, Duration sessionTimeout, AuditLog audit,
+                       PasswordHasher hasher, VerifiedCredentialCache verified) {
+        this(users, maxAttempts, sessionTimeout, audit, hasher, verified, new LoginRateLimiter());
+    }
+
+    public AuthService(Map<String, User> users, int maxAttempts, Duration sessionTimeout, AuditLog audit,
+                       PasswordHasher hasher, VerifiedCredentialCache verified, LoginRateLimiter limiter) {
         if (users == null) throw new IllegalArgumentException("users map is null");
         if (maxAttempts <= 0) throw new IllegalArgumentException("maxAttempts must be > 0");
         if (sessionTimeout == null || sessionTimeout.isZero() || sessionTimeout.isNegative())
             throw new IllegalArgumentException("sessionTimeout must be positive");
+        if (audit == null) throw new IllegalArgumentException("audit log is null");
+        if (hasher == null || verified == null) throw new IllegalArgumentException("password hasher/cache is null");
+        if (limiter == null) throw new IllegalArgumentException("rate limiter is null");
 
         this.users = users;
         this.maxAttempts = maxAttempts;
         this.sessionTimeout = sessionTimeout;
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Object();
+        this.sessions = new SessionRegistry(sessionTimeout);
+        this.audit = audit;
+        this.hasher = hasher;
+        this.verified = verified;
+        this.limiter = limiter;
     }
 
-    /** Returns user on success, else Optional.empty; sets lastError on failure. */
+    /** Returns user on success, else Optional.empty; see authenticate for the reason. */
     public Optional<User> login(String usernameKey, String password) {
-        clearLastError();
+        return authenticate(usernameKey, password).user();
+    }
+
+    /** Attempt a login and report exactly what happened to this call. */
+    public LoginResult authenticate(String usernameKey, String password) {
+        return authenticate(usernameKey, password, null);
+    }
+
+    /**
+     * Attempt a login from a source (terminal, address; null if unknown).
+     * Attempts over the username's or source's rate are refused up front.
+     */
+    public LoginResult authenticate(String usernameKey, String password, String source) {
+        if (!limiter.tryAcquire(usernameKey, source)) {
+            throttled.incrementAndGet();
+            return LoginResult.failure(LoginResult.Outcome.RATE_LIMITED, "too many login attempts, try again later");
+        }
 
         if (usernameKey == null || usernameKey.trim().isEmpty()) {
-            setError("username is empty");
-            audit.add("FAIL empty-username");
-            return Optional.empty();
+            audit(AuditEvent.Type.EMPTY_USERNAME, null, null, 0);
+            return LoginResult.failure(LoginResult.Outcome.EMPTY_USERNAME, "username is empty");
         }
 
         if (password == null) password = "";
 
         User u = users.get(usernameKey);
         if (u == null) {
-            setError("unknown user: " + usernameKey);
-            audit.add("FAIL unknown-user:" + usernameKey);
-            return Optional.empty();
+            audit(AuditEvent.Type.UNKNOWN_USER, null, usernameKey, 0);
+            return LoginResult.failure(LoginResult.Outcome.UNKNOWN_USER, "unknown user: " + usernameKey);
         }
 
+        LoginResult refused = refuseByStatus(u);
+        if (refused != null) return refused;
+
+        // Hash outside the lock; only the state transition is serialised per user
+        String stored = u.password;
+        boolean matches = checkPassword(usernameKey, stored, password);
+        // A legacy plaintext password or a hash at an older cost is replaced on success
+        String rehashed = matches && hasher.needsRehash(stored) ? hasher.hash(password) : null;
+
+        LoginResult failed = null;
+        boolean changed;
+        synchronized (stripeFor(usernameKey)) {
+            // A concurrent attempt may have locked the account meanwhile
+            refused = refuseByStatus(u);
+            if (refused != null) return refused;
+
+            if (!matches) {
+                int attempt = ++u.failedAttempts;
+                audit(AuditEvent.Type.BAD_PASSWORD, u, attempt);
+
+                if (attempt >= maxAttempts) {
+                    u.status = AccountStatus.LOCKED;
+                    audit(AuditEvent.Type.ACCOUNT_LOCKED, u, attempt);
+                    failed = LoginResult.failure(LoginResult.Outcome.LOCKED_OUT,
+                            "account locked after max attempts: " + u.username, attempt);
+                    changed = true;
+                } else {
+                    failed = LoginResult.failure(LoginResult.Outcome.BAD_PASSWORD,
+                            "invalid password (attempt " + attempt + "): " + u.username, attempt);
+                    changed = false; // counted on the live User only; stored with the next change
+                }
+            } else {
+                changed = false;
+                u.failedAttempts = 0;
+                u.lastActivity = Instant.now();
+                if (rehashed != null && u.password == stored) {
+                    u.password = rehashed;
+                    changed = true;
+                }
+            }
+        }
+        // Write back outside the lock so a persistent store's I/O never holds up other logins
+        if (changed) users.put(usernameKey, u);
+        if (failed != null) return failed;
+        if (rehashed != null) verified.remember(usernameKey, rehashed, password);
+        String token = sessions.open(u);
+        audit(AuditEvent.Type.LOGIN_SUCCESS, u, 0);
+        return LoginResult.success(u, token);
+    }
+
+    /** Login attempts refused by the rate limiter so far */
+    public long getThrottledCount() {
+        return throttled.get();
+    }
+
+    /** Set a new password, stored as a hash */
+    public void setPassword(User u, String newPassword) {
+        if (u == null || newPassword == null) throw new IllegalArgumentException("user/password is null");
+        u.password = hasher.hash(newPassword);
+        verified.forget(u.username);
+        users.put(u.username, u);
+    }
+
+    /** Recent successful checks are cached briefly so repeat logins skip the hashing */
+    private boolean checkPassword(String usernameKey, String stored, String password) {
+        if (!PasswordHasher.isHash(stored)) return PasswordHasher.plaintextEquals(stored, password);
+        if (verified.isVerified(usernameKey, stored, password)) return true;
+        boolean ok = hasher.verify(password, stored);
+        if (ok) verified.remember(usernameKey, stored, password);
+        return ok;
+    }
+
+    /** Failure result if the account may not log in at all, else null */
+    private LoginResult refuseByStatus(User u) {
         if (u.status == AccountStatus.EXPIRED) {
-            setError("account expired: " + u.username);
-            audit.add("FAIL expired:" + u.username);
-            return Optional.empty();
+            audit(AuditEvent.Type.EXPIRED, u, 0);
+            return LoginResult.failure(LoginResult.Outcome.EXPIRED, "account expired: " + u.username);
         }
 
         // Handle case sensitivity for LOCKED status
         if (u.status.toString().equalsIgnoreCase("LOCKED")) {
-            setError("account locked: " + u.username);
-            audit.add("FAIL locked:" + u.username);
-            return Optional.empty();
+            audit(AuditEvent.Type.LOCKED, u, 0);
+            return LoginResult.failure(LoginResult.Outcome.LOCKED, "account locked: " + u.username);
         }
+        return null;
+    }
 
-        if (!Objects.equals(u.password, password)) {
-            u.failedAttempts++;
-            setError("invalid password (attempt " + u.failedAttempts + "): " + u.username);
-            audit.add("FAIL bad-password:" + u.username + ":attempt=" + u.failedAttempts);
+    private void audit(AuditEvent.Type type, User u, int attempt) {
+        audit(type, u.userId, u.username, attempt);
+    }
 
-            if (u.failedAttempts >= maxAttempts) {
-                u.status = AccountStatus.LOCKED;
-                audit.add("LOCKED:" + u.username);
-                setError("account locked after max attempts: " + u.username);
-            }
-            return Optional.empty();
-        }
+    private void audit(AuditEvent.Type type, String userId, String username, int attempt) {
+        audit.record(new AuditEvent(type, userId, username, attempt, System.currentTimeMillis()));
+    }
 
-        u.failedAttempts = 0;
-        u.loggedIn = true;
-        u.lastActivity = Instant.now();
-        audit.add("SUCCESS:" + u.username);
-        return Optional.of(u);
+    private Object stripeFor(String usernameKey) {
+        int h = usernameKey.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    /** The user behind a live session token (counts as activity), else empty */
+    public Optional<User> resume(String sessionToken) {
+        Optional<User> u = sessions.validate(sessionToken);
+        u.ifPresent(user -> user.lastActivity = Instant.now());
+        return u;
     }
 
     public void touch(User u) {
-        if (u != null) u.lastActivity = Instant.now();
+        if (u == null) return;
+        u.lastActivity = Instant.now();
+        sessions.touchAll(u);
     }
 
     public boolean isSessionExpired(User u, Instant now) {
@@ -84,23 +210,42 @@ public class AuthService {
     }
 
     public void logout(User u) { 
-        if (u != null) u.loggedIn = false; 
+        if (u == null) return;
+        sessions.closeAll(u);
+        u.loggedIn = false; 
     }
 
+    /** End one session; false if the token was not live */
+    public boolean logout(String sessionToken) {
+        return sessions.close(sessionToken);
+    }
+
+    public int getActiveSessionCount() {
+        return sessions.activeCount();
+    }
+
+    /** Recent audit entries as text, oldest first (a copy) */
     public List<String> getAudit() { 
-        return Collections.unmodifiableList(audit); 
+        List<String> lines = new ArrayList<>();
+        for (AuditEvent e : audit.recent(AuditLog.DEFAULT_RECENT)) lines.add(e.toString());
+        return Collections.unmodifiableList(lines); 
+    }
+
+    /** Up to limit most recent audit events, oldest first */
+    public List<AuditEvent> getRecentAuditEvents(int limit) {
+        return audit.recent(limit);
     }
     
-    // Get audit log as array for data storage
+    // Get recent audit entries as array for data storage
     public String[] getAuditArray() {
-        return audit.toArray(new String[0]);
+        return getAudit().toArray(new String[0]);
     }
     
-    // Get all active users as array
+    // Get all active users as array (only users with live sessions are looked at)
     public User[] getActiveUsersArray() {
         List<User> activeUsers = new ArrayList<>();
-        for (User user : users.values()) {
-            if (user.loggedIn && user.status == AccountStatus.ACTIVE) {
+        for (User user : sessions.activeUsers()) {
+            if (user.status == AccountStatus.ACTIVE) {
                 activeUsers.add(user);
             }
         }
@@ -111,16 +256,4 @@ public class AuthService {
     public User[] getAllUsersArray() {
         return users.values().toArray(new User[0]);
     }
-
-    public String getLastError() { 
-        return lastError; 
-    }
-
-    private void setError(String msg) { 
-        lastError = msg; 
-    }
-
-    private void clearLastError() { 
-        lastError = null; 
-    }
-}
\ No newline at end of file
+}
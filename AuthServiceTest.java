@@ -0,0 +1,96 @@
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AuthServiceTest — JUnit 4 tests for per-call login results and the
+ * lockout rules under concurrent logins.
+ */
+public class AuthServiceTest {
+
+    private static final int MAX_ATTEMPTS = 5;
+
+    private UserStore store;
+    private AuthService auth;
+
+    @Before
+    public void setUp() {
+        store = new UserStore(new PasswordHasher(1_000));
+        store.seedSamples();
+        auth = new AuthService(store.backingMap(), MAX_ATTEMPTS, Duration.ofMinutes(15));
+    }
+
+    @Test
+    public void resultsDescribeEachCall() {
+        assertEquals(LoginResult.Outcome.SUCCESS, auth.authenticate("resident.valid@mars.local", "Passw0rd!").outcome);
+        assertEquals(LoginResult.Outcome.EMPTY_USERNAME, auth.authenticate(" ", "x").outcome);
+        assertEquals(LoginResult.Outcome.UNKNOWN_USER, auth.authenticate("ghost@mars.local", "x").outcome);
+        assertEquals(LoginResult.Outcome.EXPIRED, auth.authenticate("resident.expired@mars.local", "AnyPass").outcome);
+        assertEquals(LoginResult.Outcome.LOCKED, auth.authenticate("resident.locked@mars.local", "Pass123").outcome);
+
+        LoginResult bad = auth.authenticate("resident.valid@mars.local", "wrong");
+        assertEquals(LoginResult.Outcome.BAD_PASSWORD, bad.outcome);
+        assertEquals(1, bad.failedAttempts);
+        assertFalse(bad.user().isPresent());
+        assertTrue(bad.error.contains("attempt 1"));
+    }
+
+    @Test
+    public void floodsAreShedPerUsernameAndPerSource() {
+        LoginRateLimiter limiter = new LoginRateLimiter(3, 0.01, 5, 0.01, Duration.ofMinutes(10),
+                java.time.Clock.systemUTC());
+        auth = new AuthService(store.backingMap(), MAX_ATTEMPTS, Duration.ofMinutes(15), new AuditLog(64),
+                new PasswordHasher(1_000), new VerifiedCredentialCache(), limiter);
+
+        for (int i = 0; i < 3; i++) {
+            assertNotEquals(LoginResult.Outcome.RATE_LIMITED, auth.authenticate("ghost@mars.local", "x", "term-1").outcome);
+        }
+        assertEquals(LoginResult.Outcome.RATE_LIMITED, auth.authenticate("ghost@mars.local", "x", "term-2").outcome);
+
+        // term-1 has two attempts left, whichever usernames it tries
+        assertNotEquals(LoginResult.Outcome.RATE_LIMITED, auth.authenticate("a@mars.local", "x", "term-1").outcome);
+        assertNotEquals(LoginResult.Outcome.RATE_LIMITED, auth.authenticate("b@mars.local", "x", "term-1").outcome);
+        assertEquals(LoginResult.Outcome.RATE_LIMITED, auth.authenticate("c@mars.local", "x", "term-1").outcome);
+
+        assertEquals(2, auth.getThrottledCount());
+        assertEquals(5, auth.getAudit().size()); // shed attempts are not audited
+    }
+
+    @Test
+    public void concurrentBadPasswordsLockExactlyAtMaxAttempts() throws Exception {
+        auth = new AuthService(store.backingMap(), MAX_ATTEMPTS, Duration.ofMinutes(15), new AuditLog(1024),
+                new PasswordHasher(1_000), new VerifiedCredentialCache(), LoginRateLimiter.unlimited());
+        int threads = 8;
+        int perThread = 50;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        Map<LoginResult.Outcome, AtomicInteger> counts = new ConcurrentHashMap<>();
+        List<Future<?>> done = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            done.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    LoginResult r = auth.authenticate("resident.valid@mars.local", "wrong");
+                    counts.computeIfAbsent(r.outcome, k -> new AtomicInteger()).incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : done) f.get(30, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertEquals(MAX_ATTEMPTS - 1, counts.get(LoginResult.Outcome.BAD_PASSWORD).get());
+        assertEquals(1, counts.get(LoginResult.Outcome.LOCKED_OUT).get());
+        assertEquals(threads * perThread - MAX_ATTEMPTS, counts.get(LoginResult.Outcome.LOCKED).get());
+        User u = store.get("resident.valid@mars.local");
+        assertEquals(AccountStatus.LOCKED, u.status);
+        assertEquals(MAX_ATTEMPTS, u.failedAttempts);
+        assertEquals(1, auth.getAudit().stream().filter(a -> a.startsWith("LOCKED:")).count());
+    }
+}
@@ -1,36 +1,114 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.*;
 
 /**
- * BackupService: holds an in-memory copy of schedule data.
+ * BackupService: holds a backup of schedule data.
  * Use with ScheduleService.snapshot() and restore().
+ * Backups are kept in the compact ScheduleSnapshot format rather than as
+ * copied Task objects, and can also be written to / mapped from a file.
+ *
+ * Backups form a chain: one full base backup followed by incremental
+ * backups that hold only the (user, day) partitions changed since the
+ * previous point. Restoring replays the chain up to the requested time.
  */
 public class BackupService {
-    private Map<String, Map<LocalDate, List<Task>>> snapshot;
-
-    /** Capture a deep-ish copy of the provided schedule data */
-    public void backup(Map<String, Map<LocalDate, List<Task>>> source) {
-        snapshot = new HashMap<>();
-        for (Map.Entry<String, Map<LocalDate, List<Task>>> e : source.entrySet()) {
-            Map<LocalDate, List<Task>> days = new HashMap<>();
-            for (Map.Entry<LocalDate, List<Task>> d : e.getValue().entrySet()) {
-                days.put(d.getKey(), new ArrayList<>(d.getValue()));
-            }
-            snapshot.put(e.getKey(), days);
+    private final List<BackupPoint> chain = new ArrayList<>();
+    // Schedule version covered by the newest point; -1 if it cannot be chained onto
+    private long lastVersion = -1;
+
+    /** One link in the backup chain */
+    private static class BackupPoint {
+        final Instant takenAt;
+        final ByteBuffer data;
+
+        BackupPoint(Instant takenAt, ByteBuffer data) {
+            this.takenAt = takenAt;
+            this.data = data;
         }
     }
 
-    /** Return a copy of the last backup (may be empty if none) */
-    public Map<String, Map<LocalDate, List<Task>>> restore() {
+    /** Capture a compact binary copy of the provided schedule data */
+    public synchronized void backup(Map<String, Map<LocalDate, List<Task>>> source) {
+        startChain(ScheduleSnapshot.encode(source));
+        lastVersion = -1;
+    }
+
+    /** Full backup that later incremental backups can chain onto */
+    public synchronized void backupFull(ScheduleService schedule) {
+        long version = schedule.currentVersion();
+        startChain(ScheduleSnapshot.encode(schedule.snapshot()));
+        lastVersion = version;
+    }
+
+    /**
+     * Back up only the partitions changed since the previous backup point.
+     * Falls back to a full backup if there is no chain to extend or the
+     * schedule was restored since the last point.
+     * @return true if an incremental point was added
+     */
+    public synchronized boolean backupIncremental(ScheduleService schedule) {
+        if (chain.isEmpty() || lastVersion < 0 || !schedule.canDiffSince(lastVersion)) {
+            backupFull(schedule);
+            return false;
+        }
+        // Version first: every partition stamped at or below it is already visible,
+        // and one stamped above it is simply picked up again by the next point
+        long version = schedule.currentVersion();
+        Map<String, Map<LocalDate, List<Task>>> changes = schedule.changesSince(lastVersion);
+        chain.add(new BackupPoint(Instant.now(), ScheduleSnapshot.encode(changes)));
+        lastVersion = version;
+        return true;
+    }
+
+    /** Return the latest backed-up state (may be empty if none) */
+    public synchronized Map<String, Map<LocalDate, List<Task>>> restore() {
+        return restoreAt(Instant.MAX);
+    }
+
+    /**
+     * Point-in-time restore: the base backup with every incremental taken
+     * at or before the given time applied on top.
+     */
+    public synchronized Map<String, Map<LocalDate, List<Task>>> restoreAt(Instant pointInTime) {
         Map<String, Map<LocalDate, List<Task>>> restored = new HashMap<>();
-        if (snapshot == null) return restored;
-        for (Map.Entry<String, Map<LocalDate, List<Task>>> e : snapshot.entrySet()) {
-            Map<LocalDate, List<Task>> days = new HashMap<>();
-            for (Map.Entry<LocalDate, List<Task>> d : e.getValue().entrySet()) {
-                days.put(d.getKey(), new ArrayList<>(d.getValue()));
+        if (chain.isEmpty() || chain.get(0).takenAt.isAfter(pointInTime)) return restored;
+
+        for (BackupPoint point : chain) {
+            if (point.takenAt.isAfter(pointInTime)) break;
+            // Day lists stay lazy snapshot views; only the map structure is built here
+            for (Map.Entry<String, Map<LocalDate, List<Task>>> u : ScheduleSnapshot.of(point.data).asMap().entrySet()) {
+                restored.computeIfAbsent(u.getKey(), k -> new HashMap<>()).putAll(u.getValue());
             }
-            restored.put(e.getKey(), days);
         }
         return restored;
     }
+
+    /** When each point in the current chain was taken, oldest (the full base) first */
+    public synchronized List<Instant> getBackupTimes() {
+        List<Instant> times = new ArrayList<>();
+        for (BackupPoint point : chain) times.add(point.takenAt);
+        return times;
+    }
+
+    /** Write a backup file in one sequential pass */
+    public void backupToFile(Map<String, Map<LocalDate, List<Task>>> source, Path file) throws IOException {
+        ScheduleSnapshot.write(source, file);
+    }
+
+    /**
+     * Map a backup file and return a lazy read-only view of it; tasks are
+     * decoded only when a day's list is read.
+     */
+    public Map<String, Map<LocalDate, List<Task>>> restoreFromFile(Path file) throws IOException {
+        return ScheduleSnapshot.map(file).asMap();
+    }
+
+    private void startChain(ByteBuffer base) {
+        chain.clear();
+        chain.add(new BackupPoint(Instant.now(), base));
+    }
 }
@@ -0,0 +1,156 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Growable bit set that many threads may set, clear and read at once.
+ *
+ * Bits live in an AtomicLongArray and each set/clear is one CAS on its
+ * word, so writers to different bits never block each other. Reads take
+ * no lock at all. Growing copies the words into a bigger array; writers
+ * hold the read side of a lock while they touch a word and growth takes
+ * the write side, so no update can land in an array that is being copied.
+ */
+public class ConcurrentBitSet {
+    private volatile AtomicLongArray words;
+    private final ReentrantReadWriteLock growLock = new ReentrantReadWriteLock();
+
+    public ConcurrentBitSet(int initialBits) {
+        if (initialBits < 0) throw new IllegalArgumentException("initialBits must be >= 0");
+        this.words = new AtomicLongArray(Math.max(1, (initialBits + 63) >>> 6));
+    }
+
+    /** Set a bit; returns true if it was clear before */
+    public boolean set(int bit) {
+        checkIndex(bit);
+        int w = bit >>> 6;
+        long mask = 1L << bit;
+        ensureWords(w + 1);
+        growLock.readLock().lock();
+        try {
+            AtomicLongArray a = words;
+            while (true) {
+                long old = a.get(w);
+                if ((old & mask) != 0) return false;
+                if (a.compareAndSet(w, old, old | mask)) return true;
+            }
+        } finally {
+            growLock.readLock().unlock();
+        }
+    }
+
+    /** Clear a bit; returns true if it was set before */
+    public boolean clear(int bit) {
+        checkIndex(bit);
+        int w = bit >>> 6;
+        long mask = 1L << bit;
+        growLock.readLock().lock();
+        try {
+            AtomicLongArray a = words;
+            if (w >= a.length()) return false;
+            while (true) {
+                long old = a.get(w);
+                if ((old & mask) == 0) return false;
+                if (a.compareAndSet(w, old, old & ~mask)) return true;
+            }
+        } finally {
+            growLock.readLock().unlock();
+        }
+    }
+
+    public boolean get(int bit) {
+        checkIndex(bit);
+        AtomicLongArray a = words;
+        int w = bit >>> 6;
+        return w < a.length() && (a.get(w) & (1L << bit)) != 0;
+    }
+
+    /** Clear every bit */
+    public void clearAll() {
+        growLock.writeLock().lock();
+        try {
+            AtomicLongArray a = words;
+            for (int i = 0; i < a.length(); i++) a.set(i, 0);
+        } finally {
+            growLock.writeLock().unlock();
+        }
+    }
+
+    /** Index of the first set bit at or after from, or -1 */
+    public int nextSetBit(int from) {
+        if (from < 0) throw new IndexOutOfBoundsException("from " + from);
+        AtomicLongArray a = words;
+        int w = from >>> 6;
+        if (w >= a.length()) return -1;
+        long word = a.get(w) & (-1L << from);
+        while (true) {
+            if (word != 0) return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == a.length()) return -1;
+            word = a.get(w);
+        }
+    }
+
+    /** Index of the first clear bit at or after from (bits past the end are clear) */
+    public int nextClearBit(int from) {
+        if (from < 0) throw new IndexOutOfBoundsException("from " + from);
+        AtomicLongArray a = words;
+        int w = from >>> 6;
+        if (w >= a.length()) return from;
+        long word = ~a.get(w) & (-1L << from);
+        while (true) {
+            if (word != 0) return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == a.length()) return w << 6;
+            word = ~a.get(w);
+        }
+    }
+
+    /** Number of set bits (a moving target while writers are active) */
+    public int cardinality() {
+        AtomicLongArray a = words;
+        int n = 0;
+        for (int i = 0; i < a.length(); i++) n += Long.bitCount(a.get(i));
+        return n;
+    }
+
+    /** Number of set bits below toBit */
+    public int cardinality(int toBit) {
+        if (toBit < 0) throw new IndexOutOfBoundsException("toBit " + toBit);
+        AtomicLongArray a = words;
+        int full = Math.min(toBit >>> 6, a.length());
+        int n = 0;
+        for (int i = 0; i < full; i++) n += Long.bitCount(a.get(i));
+        if (full < a.length() && (toBit & 63) != 0) n += Long.bitCount(a.get(full) & ((1L << toBit) - 1));
+        return n;
+    }
+
+    /** Number of bits set both here and in other */
+    public int andCardinality(ConcurrentBitSet other) {
+        AtomicLongArray a = words;
+        AtomicLongArray b = other.words;
+        int n = 0;
+        for (int i = 0, len = Math.min(a.length(), b.length()); i < len; i++) n += Long.bitCount(a.get(i) & b.get(i));
+        return n;
+    }
+
+    /** Bits the set can hold before it has to grow */
+    public int capacity() {
+        return words.length() << 6;
+    }
+
+    private void ensureWords(int needed) {
+        if (needed <= words.length()) return;
+        growLock.writeLock().lock();
+        try {
+            AtomicLongArray old = words;
+            if (needed <= old.length()) return;
+            AtomicLongArray bigger = new AtomicLongArray(Math.max(needed, old.length() * 2));
+            for (int i = 0; i < old.length(); i++) bigger.set(i, old.get(i));
+            words = bigger;
+        } finally {
+            growLock.writeLock().unlock();
+        }
+    }
+
+    private static void checkIndex(int bit) {
+        if (bit < 0) throw new IndexOutOfBoundsException("bit " + bit);
+    }
+}
@@ -0,0 +1,39 @@
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of pushing one alert to its recipients (see AlertDispatcher).
+ */
+public class DeliveryStats {
+    private final int recipients;
+    private final int delivered;
+    private final List<String> failed;
+    private final List<String> timedOut;
+    private final Duration elapsed;
+
+    public DeliveryStats(int recipients, int delivered, List<String> failed, List<String> timedOut, Duration elapsed) {
+        this.recipients = recipients;
+        this.delivered = delivered;
+        this.failed = Collections.unmodifiableList(failed);
+        this.timedOut = Collections.unmodifiableList(timedOut);
+        this.elapsed = elapsed;
+    }
+
+    public int getRecipients() { return recipients; }
+    public int getDelivered() { return delivered; }
+    public List<String> getFailed() { return failed; }
+    public List<String> getTimedOut() { return timedOut; }
+    /** Time from dispatch until the last recipient finished or timed out */
+    public Duration getElapsed() { return elapsed; }
+
+    public boolean isComplete() {
+        return delivered == recipients;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("delivered %d/%d (failed %d, timed out %d) in %d ms",
+                delivered, recipients, failed.size(), timedOut.size(), elapsed.toMillis());
+    }
+}
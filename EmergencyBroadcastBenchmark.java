@@ -0,0 +1,123 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * EmergencyBroadcastBenchmark — broadcast latency against colony size.
+ * For each colony size, registers that many residents and times a run of
+ * broadcasts through EmergencyService (one append to the shared feed),
+ * next to the old delivery that added the alert to every resident's own
+ * CopyOnWriteArrayList. Each resident then reads their alerts once, to
+ * show what fan-out on read costs at the other end. Finally pushes one
+ * alert to live channels that each take a millisecond, to show
+ * broadcastAsync returning at once while the pushes run in the background,
+ * times resolving and top-k reads against a storm of active alerts, and
+ * times acknowledgement roll calls across the largest colony.
+ * Usage: EmergencyBroadcastBenchmark [alerts] (default 200)
+ */
+public class EmergencyBroadcastBenchmark {
+
+    private static final int[] COLONY_SIZES = { 1_000, 10_000, 50_000 };
+
+    public static void main(String[] args) {
+        int alerts = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        System.out.println("=== Emergency broadcast, " + alerts + " alerts ===");
+        for (int residents : COLONY_SIZES) {
+            EmergencyService service = new EmergencyService();
+            for (int i = 0; i < residents; i++) service.registerRecipient("resident" + i + "@mars.local");
+            long start = System.nanoTime();
+            for (int a = 0; a < alerts; a++) {
+                service.broadcast(AlertType.RADIATION_STORM, "storm " + a, Severity.HIGH, "OP001");
+            }
+            double feedMicros = (System.nanoTime() - start) / 1e3 / alerts;
+
+            start = System.nanoTime();
+            long read = 0;
+            for (int i = 0; i < residents; i++) read += service.pollNewAlerts("resident" + i + "@mars.local").size();
+            double readMillis = (System.nanoTime() - start) / 1e6;
+
+            double legacyMicros = legacyBroadcast(residents, alerts);
+            System.out.printf("%,7d residents :: feed %9.1f us/alert | per-user lists %11.1f us/alert | all read %,d in %.0f ms%n",
+                    residents, feedMicros, legacyMicros, read, readMillis);
+        }
+        asyncPush(2_000);
+        alertStorm(20_000);
+        rollCall(COLONY_SIZES[COLONY_SIZES.length - 1]);
+    }
+
+    private static void rollCall(int residents) {
+        EmergencyService service = new EmergencyService();
+        for (int i = 0; i < residents; i++) service.registerRecipient("resident" + i + "@mars.local");
+        String id = service.broadcast(AlertType.HABITAT_BREACH, "evacuate dome 2", Severity.CRITICAL, "OP001").getAlertId();
+        long start = System.nanoTime();
+        for (int i = 0; i < residents; i++) {
+            if (i % 100 != 0) service.acknowledgeAlert("resident" + i + "@mars.local", id);
+        }
+        double ackMicros = (System.nanoTime() - start) / 1e3 / residents;
+
+        int rounds = 1_000;
+        double pct = 0;
+        int missing = 0;
+        start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) pct = service.getAcknowledgedPercentage(id);
+        double pctMicros = (System.nanoTime() - start) / 1e3 / rounds;
+        start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) missing = service.getUnacknowledgedUsers(id).size();
+        double missingMicros = (System.nanoTime() - start) / 1e3 / rounds;
+        System.out.printf("roll call over %,d residents :: ack %.2f us each | %.1f%% acknowledged in %.1f us | %,d missing listed in %.1f us%n",
+                residents, ackMicros, pct, pctMicros, missing, missingMicros);
+    }
+
+    private static void alertStorm(int active) {
+        EmergencyService service = new EmergencyService();
+        Severity[] levels = Severity.values();
+        List<String> ids = new ArrayList<>(active);
+        for (int i = 0; i < active; i++) {
+            ids.add(service.broadcast(AlertType.CUSTOM, "sensor " + i, levels[i % levels.length], "OP001").getAlertId());
+        }
+        long start = System.nanoTime();
+        int reads = 10_000;
+        for (int i = 0; i < reads; i++) service.getTopActiveAlerts(10);
+        double topMicros = (System.nanoTime() - start) / 1e3 / reads;
+
+        Collections.shuffle(ids, new Random(7));
+        start = System.nanoTime();
+        for (String id : ids) service.resolveAlert(id);
+        double resolveMicros = (System.nanoTime() - start) / 1e3 / active;
+        System.out.printf("%,d active alerts :: top 10 in %.2f us | resolve %.2f us each%n",
+                active, topMicros, resolveMicros);
+    }
+
+    private static void asyncPush(int sessions) {
+        EmergencyService service = new EmergencyService();
+        for (int i = 0; i < sessions; i++) {
+            service.registerChannel("session" + i, alert -> Thread.sleep(1)); // a slow terminal
+        }
+        long start = System.nanoTime();
+        CompletableFuture<DeliveryStats> pushed =
+                service.broadcastAsync(AlertType.FIRE, "fire in hab 3", Severity.CRITICAL, "OP001");
+        double returnedMillis = (System.nanoTime() - start) / 1e6;
+        DeliveryStats stats = pushed.join();
+        System.out.printf("push to %,d sessions :: broadcastAsync returned in %.1f ms, %s%n",
+                sessions, returnedMillis, stats);
+    }
+
+    /** The previous delivery: every broadcast appends to each resident's copy-on-write list */
+    private static double legacyBroadcast(int residents, int alerts) {
+        Map<String, List<Object>> userAlerts = new ConcurrentHashMap<>();
+        for (int i = 0; i < residents; i++) userAlerts.put("resident" + i + "@mars.local", new CopyOnWriteArrayList<>());
+        long start = System.nanoTime();
+        for (int a = 0; a < alerts; a++) {
+            Object alert = "storm " + a;
+            for (String username : userAlerts.keySet()) {
+                userAlerts.computeIfAbsent(username, k -> new CopyOnWriteArrayList<>()).add(alert);
+            }
+        }
+        return (System.nanoTime() - start) / 1e3 / alerts;
+    }
+}
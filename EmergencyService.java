@@ -1,18 +1,84 @@
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 /**
  * Handles emergency alerts and broadcasting to users
  * Sprint 3 - OPERATOR3: Manage emergency alerts and evacuation protocols
+ *
+ * Alerts go into one shared AlertFeed and every user only keeps a read
+ * cursor into it, so a broadcast is a single append however large the
+ * colony is. Users join the feed when they are registered as recipients
+ * (or first sent an alert) and see broadcasts from then on. An alert for
+ * one user goes to that user's own inbox in the feed, and the feed keeps
+ * only its most recent alerts plus those still unresolved, so reading one
+ * user's alerts never walks the whole colony's history.
+ *
+ * Users with a live channel (registerChannel) also get alerts pushed by an
+ * AlertDispatcher in the background; broadcastAsync hands back a future of
+ * the delivery stats instead of waiting, and CRITICAL alerts are pushed
+ * ahead of less severe ones still queued.
+ *
+ * Active alerts are indexed by id and kept in a concurrent skip list
+ * ordered by (severity, createdAt), most severe and then oldest first.
+ * Resolving is O(log n) and the most severe alerts can be read off the
+ * front of the list without copying it.
+ *
+ * Every recipient gets a dense ordinal when first seen, and each alert's
+ * acknowledgements are a bitmap over those ordinals: one bit per user
+ * rather than a string per user per alert, set with a CAS so concurrent
+ * acknowledgements never clash. The audience of an alert is everyone
+ * registered when it went out, plus anyone it is later sent to with
+ * addAlertToUser: registering and broadcasting share a lock, so the
+ * audience is exactly the users who can see the alert, and only they can
+ * acknowledge it. The acknowledged share and the roll call of who
+ * has not acknowledged are word-at-a-time scans of the bitmap.
  */
 public class EmergencyService {
-    private final Map<String, List<Alert>> userAlerts = new ConcurrentHashMap<>();
-    private final List<Alert> activeAlerts = new CopyOnWriteArrayList<>();
-    private final Map<String, Set<String>> alertAcknowledgments = new ConcurrentHashMap<>();
+    private final AlertDispatcher<Alert> push;
+    private static final Comparator<Alert> BY_SEVERITY = Comparator.comparing(Alert::getSeverity)
+            .thenComparing(Alert::getCreatedAt)
+            .thenComparing(Alert::getAlertId);
     
-    public EmergencyService() {}
+    private final Map<String, Alert> activeById = new ConcurrentHashMap<>();
+    private final NavigableSet<Alert> activeBySeverity = new ConcurrentSkipListSet<>(BY_SEVERITY);
+    // Unresolved alerts are held past the feed's retention
+    private final AlertFeed<Alert> feed = new AlertFeed<>(AlertFeed.DEFAULT_RETAINED,
+            alert -> activeById.containsKey(alert.getAlertId()));
+    private final IdGenerator ids = IdGenerator.SHARED;
+    private final UsernameOrdinals recipients = new UsernameOrdinals();
+    private final Object audienceLock = new Object(); // registering vs. capturing an audience
+    private final Map<String, Acknowledgements> alertAcknowledgments = new ConcurrentHashMap<>();
+    
+    /** Who has acknowledged one alert, by recipient ordinal */
+    private static final class Acknowledgements {
+        final int audience; // ordinals below this were recipients when the alert went out
+        final ConcurrentBitSet extra = new ConcurrentBitSet(64); // ordinals sent it directly afterwards
+        final ConcurrentBitSet acked;
+        
+        Acknowledgements(int audience) {
+            this.audience = audience;
+            this.acked = new ConcurrentBitSet(audience);
+        }
+        
+        boolean includes(int ordinal) {
+            return ordinal < audience || extra.get(ordinal);
+        }
+        
+        int size() {
+            return audience + extra.cardinality();
+        }
+    }
+    
+    public EmergencyService() {
+        this(new AlertDispatcher<>(alert -> alert.getSeverity().ordinal())); // CRITICAL first
+    }
+    
+    public EmergencyService(AlertDispatcher<Alert> push) {
+        this.push = push;
+    }
     
     /**
      * Broadcast emergency alert to all users
@@ -25,71 +91,229 @@ public class EmergencyService {
     public List<String> broadcastEmergencyAlert(AlertType alertType, String message, 
                                                Severity severity, String broadcastBy) {
         List<String> deliveredUsers = new ArrayList<>();
+        broadcast(alertType, message, severity, broadcastBy, deliveredUsers);
+        return deliveredUsers;
+    }
+    
+    /**
+     * Broadcast emergency alert to all users without listing them
+     * (one append to the shared feed)
+     * @return the alert; getRecipientCount() tells how many users it reaches
+     */
+    public Alert broadcast(AlertType alertType, String message, Severity severity, String broadcastBy) {
+        return broadcast(alertType, message, severity, broadcastBy, null);
+    }
+    
+    /** @param audience if not null, gets the users the alert reaches */
+    private Alert broadcast(AlertType alertType, String message, Severity severity, String broadcastBy,
+                            List<String> audience) {
         Alert alert = new Alert(generateAlertId(), alertType, message, severity, broadcastBy, Instant.now());
         
-        activeAlerts.add(alert);
+        // Ordered set first: resolve goes through the id map, so it never sees half an insert
+        activeBySeverity.add(alert);
+        activeById.put(alert.getAlertId(), alert);
         
-        // Broadcast to all users in the system
-        for (String username : userAlerts.keySet()) {
-            addAlertToUser(username, alert);
-            deliveredUsers.add(username);
+        // Audience and publish together: whoever registers later neither sees the alert nor counts in it
+        synchronized (audienceLock) {
+            alertAcknowledgments.put(alert.getAlertId(), new Acknowledgements(recipients.size()));
+            if (audience != null) audience.addAll(feed.subscribers());
+            feed.publish(alert);
         }
-        
-        // Initialize acknowledgment tracking
-        alertAcknowledgments.put(alert.getAlertId(), new HashSet<>());
-        
-        return deliveredUsers;
+        return alert;
+    }
+    
+    /**
+     * Broadcast emergency alert and push it to every user with a channel
+     * without waiting for the pushes
+     * @return completes with the push delivery stats
+     */
+    public CompletableFuture<DeliveryStats> broadcastAsync(AlertType alertType, String message,
+                                                          Severity severity, String broadcastBy) {
+        return push.dispatch(broadcast(alertType, message, severity, broadcastBy));
+    }
+    
+    /**
+     * Register a user's live channel (terminal session, socket) for pushed
+     * alerts; the user also becomes a broadcast recipient
+     */
+    public void registerChannel(String username, AlertDispatcher.Channel<Alert> channel) {
+        registerRecipient(username);
+        push.register(username, channel);
+    }
+    
+    public void unregisterChannel(String username) {
+        push.unregister(username);
+    }
+    
+    /**
+     * Register a user to receive broadcasts from now on
+     */
+    public void registerRecipient(String username) {
+        if (recipients.find(username) >= 0 && feed.isSubscribed(username)) return;
+        synchronized (audienceLock) {
+            // Ordinal and feed cursor together, between broadcasts: the user is in
+            // the audience of exactly the broadcasts they can see
+            recipients.ordinalOf(username);
+            feed.subscribe(username);
+        }
+    }
+    
+    /**
+     * Number of users a broadcast reaches
+     */
+    public int getRecipientCount() {
+        return feed.subscriberCount();
     }
     
     /**
      * Add alert to specific user's alert list
      */
     public void addAlertToUser(String username, Alert alert) {
-        userAlerts.computeIfAbsent(username, k -> new CopyOnWriteArrayList<>()).add(alert);
+        registerRecipient(username);
+        Acknowledgements acks = alertAcknowledgments.get(alert.getAlertId());
+        if (acks != null) {
+            int ordinal = recipients.find(username);
+            if (ordinal >= acks.audience) acks.extra.set(ordinal); // before they can see it
+        }
+        feed.publishTo(username, alert);
     }
     
     /**
      * Get active alerts for a user
      */
     public List<Alert> getUserAlerts(String username) {
-        return userAlerts.getOrDefault(username, new ArrayList<>());
+        return feed.itemsFor(username);
     }
     
     /**
-     * Acknowledge an alert
+     * Alerts the user has not seen yet; they count as seen afterwards
+     */
+    public List<Alert> pollNewAlerts(String username) {
+        return feed.poll(username);
+    }
+    
+    /**
+     * Number of alerts the user has not seen yet
+     */
+    public int getUnreadCount(String username) {
+        return feed.unreadCount(username);
+    }
+    
+    /**
+     * Number of alerts that expired before the user saw them; only
+     * resolved alerts expire
+     */
+    public long getMissedAlertCount(String username) {
+        return feed.missedCount(username);
+    }
+    
+    /**
+     * Acknowledge an alert; false if already acknowledged, or if the user
+     * was not registered when the alert went out
      */
     public boolean acknowledgeAlert(String username, String alertId) {
-        Set<String> acknowledgments = alertAcknowledgments.get(alertId);
-        if (acknowledgments != null) {
-            return acknowledgments.add(username);
-        }
-        return false;
+        Acknowledgements acks = alertAcknowledgments.get(alertId);
+        int ordinal = recipients.find(username);
+        if (acks == null || ordinal < 0 || !acks.includes(ordinal)) return false;
+        return acks.acked.set(ordinal);
     }
     
     /**
      * Check if user has acknowledged alert
      */
     public boolean hasAcknowledgedAlert(String username, String alertId) {
-        Set<String> acknowledgments = alertAcknowledgments.get(alertId);
-        return acknowledgments != null && acknowledgments.contains(username);
+        Acknowledgements acks = alertAcknowledgments.get(alertId);
+        int ordinal = recipients.find(username);
+        return acks != null && ordinal >= 0 && acks.acked.get(ordinal);
+    }
+    
+    /**
+     * Number of the alert's audience who have acknowledged it
+     */
+    public int getAcknowledgedCount(String alertId) {
+        Acknowledgements acks = alertAcknowledgments.get(alertId);
+        return acks == null ? 0 : acks.acked.cardinality(); // only the audience can set a bit
+    }
+    
+    /**
+     * Share of the alert's audience who have acknowledged it, 0 to 100
+     * (100 when the alert reached nobody)
+     */
+    public double getAcknowledgedPercentage(String alertId) {
+        Acknowledgements acks = alertAcknowledgments.get(alertId);
+        if (acks == null) return 0.0;
+        int size = acks.size();
+        if (size == 0) return 100.0;
+        return 100.0 * acks.acked.cardinality() / size;
     }
     
     /**
-     * Get all active emergency alerts
+     * Roll call: users the alert went out to who have not acknowledged it,
+     * in registration order
+     */
+    public List<String> getUnacknowledgedUsers(String alertId) {
+        Acknowledgements acks = alertAcknowledgments.get(alertId);
+        List<String> missing = new ArrayList<>();
+        if (acks == null) return missing;
+        for (int i = acks.acked.nextClearBit(0); i < acks.audience; i = acks.acked.nextClearBit(i + 1)) {
+            missing.add(recipients.nameOf(i));
+        }
+        for (int i = acks.extra.nextSetBit(0); i >= 0; i = acks.extra.nextSetBit(i + 1)) {
+            if (!acks.acked.get(i)) missing.add(recipients.nameOf(i));
+        }
+        return missing;
+    }
+    
+    /**
+     * Get all active emergency alerts, most severe first
      */
     public List<Alert> getActiveAlerts() {
-        return new ArrayList<>(activeAlerts);
+        return new ArrayList<>(activeBySeverity);
+    }
+    
+    /**
+     * Up to k active alerts, most severe (then oldest) first; walks only
+     * the front of the index
+     */
+    public List<Alert> getTopActiveAlerts(int k) {
+        List<Alert> top = new ArrayList<>(Math.min(k, 16));
+        Iterator<Alert> it = activeBySeverity.iterator();
+        while (top.size() < k && it.hasNext()) top.add(it.next());
+        return top;
+    }
+    
+    /**
+     * Live, read-only view of the active alerts, most severe first; it
+     * reflects resolves and new alerts as they happen and never throws
+     * ConcurrentModificationException
+     */
+    public Collection<Alert> activeAlertsView() {
+        return Collections.unmodifiableCollection(activeBySeverity);
+    }
+    
+    /**
+     * Active alert with this id, or null
+     */
+    public Alert getActiveAlert(String alertId) {
+        return activeById.get(alertId);
+    }
+    
+    public int getActiveAlertCount() {
+        return activeById.size();
     }
     
     /**
      * Resolve an emergency alert
      */
     public boolean resolveAlert(String alertId) {
-        return activeAlerts.removeIf(alert -> alert.getAlertId().equals(alertId));
+        Alert alert = activeById.remove(alertId);
+        if (alert == null) return false;
+        activeBySeverity.remove(alert);
+        return true;
     }
     
     private String generateAlertId() {
-        return "EMR-" + System.currentTimeMillis();
+        return ids.next("EMR");
     }
 }
 
@@ -0,0 +1,180 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * EmergencyServiceTest — JUnit 4 tests for the active alert index:
+ * severity ordering, top-k and resolve by id; and for acknowledgement
+ * tracking and roll calls.
+ */
+public class EmergencyServiceTest {
+
+    private static List<Severity> severities(Collection<Alert> alerts) {
+        List<Severity> out = new ArrayList<>();
+        for (Alert a : alerts) out.add(a.getSeverity());
+        return out;
+    }
+
+    @Test
+    public void activeAlertsAreMostSevereThenOldestFirst() {
+        EmergencyService service = new EmergencyService();
+        Alert dust = service.broadcast(AlertType.CUSTOM, "dust", Severity.LOW, "OP001");
+        Alert storm = service.broadcast(AlertType.RADIATION_STORM, "storm", Severity.HIGH, "OP001");
+        Alert breach = service.broadcast(AlertType.HABITAT_BREACH, "breach", Severity.CRITICAL, "OP001");
+        Alert fire = service.broadcast(AlertType.FIRE, "fire", Severity.CRITICAL, "OP001");
+
+        assertEquals(Arrays.asList(breach, fire, storm, dust), service.getActiveAlerts());
+        assertEquals(Arrays.asList(breach, fire), service.getTopActiveAlerts(2));
+        assertEquals(4, service.getTopActiveAlerts(10).size());
+        assertTrue(service.getTopActiveAlerts(0).isEmpty());
+    }
+
+    @Test
+    public void resolveRemovesByIdAndUpdatesTheView() {
+        EmergencyService service = new EmergencyService();
+        Collection<Alert> view = service.activeAlertsView();
+        Alert storm = service.broadcast(AlertType.RADIATION_STORM, "storm", Severity.HIGH, "OP001");
+        Alert breach = service.broadcast(AlertType.HABITAT_BREACH, "breach", Severity.CRITICAL, "OP001");
+        assertNotEquals(storm.getAlertId(), breach.getAlertId());
+        assertSame(breach, service.getActiveAlert(breach.getAlertId()));
+
+        assertTrue(service.resolveAlert(breach.getAlertId()));
+        assertFalse(service.resolveAlert(breach.getAlertId()));
+        assertNull(service.getActiveAlert(breach.getAlertId()));
+        assertEquals(1, service.getActiveAlertCount());
+        assertEquals(Collections.singletonList(Severity.HIGH), severities(view));
+        assertEquals(Collections.singletonList(storm), service.getTopActiveAlerts(3));
+    }
+
+    @Test
+    public void alertsRaisedTogetherGetDistinctIds() {
+        EmergencyService service = new EmergencyService();
+        for (int i = 0; i < 1_000; i++) {
+            service.broadcast(AlertType.CUSTOM, "drill " + i, Severity.MEDIUM, "OP001");
+        }
+        assertEquals(1_000, service.getActiveAlertCount());
+        assertEquals(1_000, service.getActiveAlerts().size());
+    }
+
+    @Test
+    public void rollCallListsTheAudienceWhoHaveNotAcknowledged() {
+        EmergencyService service = new EmergencyService();
+        for (String u : Arrays.asList("ada", "bob", "cy", "dee")) service.registerRecipient(u);
+        Alert breach = service.broadcast(AlertType.HABITAT_BREACH, "breach", Severity.CRITICAL, "OP001");
+        service.registerRecipient("eve"); // joined after the alert went out
+        String id = breach.getAlertId();
+
+        assertTrue(service.acknowledgeAlert("bob", id));
+        assertFalse(service.acknowledgeAlert("bob", id));
+        assertTrue(service.acknowledgeAlert("dee", id));
+        assertFalse("not in the audience", service.acknowledgeAlert("eve", id));
+        assertFalse(service.acknowledgeAlert("stranger", id));
+        assertFalse(service.acknowledgeAlert("ada", "EMR-missing"));
+
+        assertFalse(service.hasAcknowledgedAlert("eve", id));
+        assertFalse(service.hasAcknowledgedAlert("stranger", id));
+        assertEquals(5, service.getRecipientCount()); // acknowledging registers nobody
+        assertFalse(service.hasAcknowledgedAlert("ada", id));
+        assertFalse(service.hasAcknowledgedAlert("nobody", id));
+        assertEquals(2, service.getAcknowledgedCount(id));
+        assertEquals(50.0, service.getAcknowledgedPercentage(id), 1e-9);
+        assertEquals(Arrays.asList("ada", "cy"), service.getUnacknowledgedUsers(id));
+    }
+
+    @Test
+    public void concurrentAcknowledgementsAreAllCounted() throws Exception {
+        EmergencyService service = new EmergencyService();
+        int users = 2_000;
+        for (int i = 0; i < users; i++) service.registerRecipient("resident" + i);
+        String id = service.broadcast(AlertType.FIRE, "fire", Severity.CRITICAL, "OP001").getAlertId();
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> done = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int first = t;
+            done.add(pool.submit(() -> {
+                for (int i = first; i < users; i += 8) {
+                    if (i % 10 != 0) service.acknowledgeAlert("resident" + i, id);
+                }
+            }));
+        }
+        for (Future<?> f : done) f.get(10, TimeUnit.SECONDS);
+        pool.shutdown();
+
+        assertEquals(1_800, service.getAcknowledgedCount(id));
+        assertEquals(90.0, service.getAcknowledgedPercentage(id), 1e-9);
+        List<String> missing = service.getUnacknowledgedUsers(id);
+        assertEquals(200, missing.size());
+        assertEquals("resident0", missing.get(0));
+        assertEquals("resident1990", missing.get(199));
+    }
+
+    @Test
+    public void usersRegisteringDuringBroadcastsSeeExactlyTheirAudience() throws Exception {
+        EmergencyService service = new EmergencyService();
+        List<String> ids = Collections.synchronizedList(new ArrayList<>());
+        Thread operator = new Thread(() -> {
+            for (int i = 0; i < 200; i++) {
+                ids.add(service.broadcast(AlertType.CUSTOM, "drill " + i, Severity.LOW, "OP001").getAlertId());
+            }
+        });
+        operator.start();
+        for (int i = 0; i < 2_000; i++) service.registerRecipient("resident" + i);
+        operator.join();
+
+        for (int i = 0; i < 2_000; i++) {
+            String user = "resident" + i;
+            Set<String> seen = new HashSet<>();
+            for (Alert a : service.getUserAlerts(user)) seen.add(a.getAlertId());
+            for (String id : ids) {
+                assertEquals(user + " " + id, seen.contains(id), service.acknowledgeAlert(user, id));
+            }
+        }
+    }
+
+    @Test
+    public void unresolvedAlertsOutliveFeedRetention() {
+        EmergencyService service = new EmergencyService();
+        service.registerRecipient("ada");
+        Alert breach = service.broadcast(AlertType.HABITAT_BREACH, "breach", Severity.CRITICAL, "OP001");
+        for (int i = 0; i < AlertFeed.DEFAULT_RETAINED + 2_048; i++) {
+            Alert drill = service.broadcast(AlertType.CUSTOM, "drill " + i, Severity.LOW, "OP001");
+            service.resolveAlert(drill.getAlertId());
+        }
+
+        List<Alert> unread = service.pollNewAlerts("ada");
+        assertSame(breach, unread.get(0));
+        assertEquals(AlertFeed.DEFAULT_RETAINED + 2_048 + 1, unread.size() + service.getMissedAlertCount("ada"));
+        assertTrue(service.getMissedAlertCount("ada") > 0);
+    }
+
+    @Test
+    public void broadcastListsExactlyItsAudience() {
+        EmergencyService service = new EmergencyService();
+        for (String u : Arrays.asList("ada", "bob")) service.registerRecipient(u);
+        List<String> reached = service.broadcastEmergencyAlert(AlertType.FIRE, "fire", Severity.HIGH, "OP001");
+        assertEquals(new HashSet<>(Arrays.asList("ada", "bob")), new HashSet<>(reached));
+    }
+
+    @Test
+    public void usersSentAnAlertLaterJoinItsAudience() {
+        EmergencyService service = new EmergencyService();
+        for (String u : Arrays.asList("ada", "bob")) service.registerRecipient(u);
+        Alert breach = service.broadcast(AlertType.HABITAT_BREACH, "breach", Severity.CRITICAL, "OP001");
+        String id = breach.getAlertId();
+        service.registerRecipient("eve");
+        service.addAlertToUser("cy", breach); // not registered before
+
+        assertTrue(service.getUserAlerts("cy").contains(breach));
+        assertEquals(Arrays.asList("ada", "bob", "cy"), service.getUnacknowledgedUsers(id));
+        assertTrue(service.acknowledgeAlert("cy", id));
+        assertFalse("still not in the audience", service.acknowledgeAlert("eve", id));
+        assertTrue(service.acknowledgeAlert("ada", id));
+
+        assertEquals(2, service.getAcknowledgedCount(id));
+        assertEquals(200.0 / 3, service.getAcknowledgedPercentage(id), 1e-9);
+        assertEquals(Collections.singletonList("bob"), service.getUnacknowledgedUsers(id));
+    }
+}
@@ -0,0 +1,66 @@
+import java.time.Clock;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unique, increasing 64-bit ids made of time and a sequence
+ * (Snowflake-style), for alerts, reports and maintenance tasks.
+ *
+ * Layout, high to low: 41 bits of milliseconds since 2020-01-01 UTC,
+ * 10 bits of node number, 12 bits of sequence within the millisecond.
+ * The last id handed out lives in one AtomicLong; next() proposes the
+ * current millisecond with sequence 0 and, if that is not above the last
+ * id, the sequence after the last id, then CASes it in. There is no lock
+ * and no waiting: once a millisecond's 4096 ids are used up the sequence
+ * carries into the next millisecond, and a clock that steps back keeps
+ * counting on from the last id. Either way ids never repeat or go down.
+ *
+ * Give each process its own node number if ids from several processes
+ * end up in one place; all services in a process share SHARED.
+ */
+public class IdGenerator {
+    public static final long EPOCH_MILLIS = 1_577_836_800_000L; // 2020-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final int TIME_SHIFT = NODE_BITS + SEQUENCE_BITS;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+
+    /** The generator every service in this process draws from */
+    public static final IdGenerator SHARED = new IdGenerator(0, Clock.systemUTC());
+
+    private final long nodeBits;
+    private final Clock clock;
+    private final AtomicLong last = new AtomicLong();
+
+    public IdGenerator(int node, Clock clock) {
+        if (node < 0 || node > MAX_NODE) throw new IllegalArgumentException("node must be 0.." + MAX_NODE);
+        this.nodeBits = (long) node << SEQUENCE_BITS;
+        this.clock = clock;
+    }
+
+    /** Next id; greater than every id this generator handed out before */
+    public long next() {
+        long fresh = ((clock.millis() - EPOCH_MILLIS) << TIME_SHIFT) | nodeBits;
+        while (true) {
+            long prev = last.get();
+            long id = fresh > prev ? fresh : after(prev);
+            if (last.compareAndSet(prev, id)) return id;
+        }
+    }
+
+    /** Next id with a prefix, e.g. "EMR-" followed by the number */
+    public String next(String prefix) {
+        return prefix + "-" + next();
+    }
+
+    private long after(long prev) {
+        if ((prev & SEQUENCE_MASK) != SEQUENCE_MASK) return prev + 1;
+        return (((prev >>> TIME_SHIFT) + 1) << TIME_SHIFT) | nodeBits; // sequence full: carry into the time
+    }
+
+    /** Millisecond an id was made in (later if its millisecond overflowed) */
+    public static Instant timeOf(long id) {
+        return Instant.ofEpochMilli((id >>> TIME_SHIFT) + EPOCH_MILLIS);
+    }
+}
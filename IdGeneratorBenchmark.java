@@ -0,0 +1,37 @@
+import java.util.Arrays;
+
+/**
+ * IdGeneratorBenchmark — ids per second from the shared generator as
+ * threads are added, checking every run for duplicates. Each thread keeps
+ * its ids; afterwards they are sorted together and scanned for repeats.
+ * Usage: IdGeneratorBenchmark [idsPerThread] (default 2,000,000)
+ */
+public class IdGeneratorBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int perThread = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("=== Id generation, " + String.format("%,d", perThread) + " ids per thread, " + cores + " cores ===");
+        for (int threads : new int[] { 1, 2, 4, 8 }) {
+            long[][] got = new long[threads][perThread];
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                long[] mine = got[t];
+                workers[t] = new Thread(() -> {
+                    for (int i = 0; i < mine.length; i++) mine[i] = IdGenerator.SHARED.next();
+                });
+            }
+            long start = System.nanoTime();
+            for (Thread w : workers) w.start();
+            for (Thread w : workers) w.join();
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            long[] all = new long[threads * perThread];
+            for (int t = 0; t < threads; t++) System.arraycopy(got[t], 0, all, t * perThread, perThread);
+            Arrays.sort(all);
+            int duplicates = 0;
+            for (int i = 1; i < all.length; i++) if (all[i] == all[i - 1]) duplicates++;
+            System.out.printf("%d threads :: %,.0f ids/s | %d duplicates%n", threads, all.length / seconds, duplicates);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * IdGeneratorTest — JUnit 4 tests for time+sequence ids: same-millisecond
+ * bursts, sequence overflow, a clock stepping back, and many threads.
+ * Uses a hand-wound clock so the millisecond only moves when told to.
+ */
+public class IdGeneratorTest {
+
+    /** Clock that only moves when the test says so. */
+    private static class TestClock extends Clock {
+        private volatile Instant now;
+        TestClock(Instant start) { this.now = start; }
+        void advance(Duration d) { now = now.plus(d); }
+        @Override public ZoneId getZone() { return ZoneOffset.UTC; }
+        @Override public Clock withZone(ZoneId zone) { return this; }
+        @Override public Instant instant() { return now; }
+    }
+
+    private final TestClock clock = new TestClock(Instant.parse("2040-03-01T08:00:00Z"));
+
+    @Test
+    public void burstInOneMillisecondStaysUniqueAndIncreasing() {
+        IdGenerator ids = new IdGenerator(3, clock);
+        long prev = ids.next();
+        assertEquals(clock.instant(), IdGenerator.timeOf(prev));
+        for (int i = 0; i < 10_000; i++) { // more than one millisecond's sequence
+            long id = ids.next();
+            assertTrue(id > prev);
+            assertEquals(3, (id >>> 12) & IdGenerator.MAX_NODE); // overflow never spills into the node
+            prev = id;
+        }
+        assertEquals(clock.instant().plusMillis(2), IdGenerator.timeOf(prev));
+    }
+
+    @Test
+    public void clockSteppingBackNeverRepeatsAnId() {
+        IdGenerator ids = new IdGenerator(0, clock);
+        long before = ids.next();
+        clock.advance(Duration.ofSeconds(-5));
+        long after = ids.next();
+        assertTrue(after > before);
+        clock.advance(Duration.ofSeconds(10));
+        long later = ids.next();
+        assertEquals(clock.instant(), IdGenerator.timeOf(later));
+        assertEquals("EMR-" + (later + 1), ids.next("EMR"));
+    }
+
+    @Test
+    public void threadsNeverGetTheSameId() throws Exception {
+        IdGenerator ids = new IdGenerator(0, Clock.systemUTC());
+        int threads = 8, perThread = 50_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(pool.submit(() -> {
+                long[] got = new long[perThread];
+                for (int i = 0; i < perThread; i++) got[i] = ids.next();
+                return got;
+            }));
+        }
+        Set<Long> seen = new HashSet<>();
+        for (Future<long[]> f : results) {
+            long[] got = f.get(30, TimeUnit.SECONDS);
+            for (int i = 0; i < got.length; i++) {
+                assertTrue(seen.add(got[i]));
+                if (i > 0) assertTrue(got[i] > got[i - 1]);
+            }
+        }
+        pool.shutdown();
+        assertEquals(threads * perThread, seen.size());
+    }
+
+    @Test
+    public void nodeOutOfRangeIsRejected() {
+        try {
+            new IdGenerator(IdGenerator.MAX_NODE + 1, clock);
+            fail("node does not fit in 10 bits");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
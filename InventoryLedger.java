@@ -0,0 +1,114 @@
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Lock-free stock ledger for supply items.
+ * Each SupplyItem owns its own counter slot (indexed by ordinal), so
+ * submissions for different items never contend with each other, and a
+ * reservation for one item is a single compare-and-set on its slot.
+ *
+ * Stock moves between two buckets:
+ *  - available: can still be reserved by new requests
+ *  - reserved:  held by SUBMITTED requests until committed or released
+ */
+public class InventoryLedger {
+    // Counters are spread one cache line apart so hot items don't false-share
+    private static final int STRIDE = 16;
+    private static final SupplyItem[] ITEMS = SupplyItem.values();
+
+    private final AtomicIntegerArray available;
+    private final AtomicIntegerArray reserved;
+
+    public InventoryLedger() {
+        int slots = ITEMS.length * STRIDE;
+        available = new AtomicIntegerArray(slots);
+        reserved = new AtomicIntegerArray(slots);
+    }
+
+    private static int slot(SupplyItem item) {
+        return item.ordinal() * STRIDE;
+    }
+
+    /** Set the available stock for an item (used for initial load / restock counts) */
+    public void setAvailable(SupplyItem item, int quantity) {
+        if (quantity < 0) throw new IllegalArgumentException("quantity must be >= 0");
+        available.set(slot(item), quantity);
+    }
+
+    /**
+     * Atomically move quantity from available to reserved.
+     * @return false (and change nothing) if there is not enough stock
+     */
+    public boolean reserve(SupplyItem item, int quantity) {
+        if (quantity <= 0) return false;
+        int i = slot(item);
+        while (true) {
+            int current = available.get(i);
+            if (current < quantity) return false;
+            if (available.compareAndSet(i, current, current - quantity)) {
+                reserved.addAndGet(i, quantity);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reserve several items at once, indexed by SupplyItem ordinal.
+     * Either every line is reserved or none is: on the first shortfall the
+     * lines already taken are handed back before returning false.
+     */
+    public boolean reserveAll(int[] quantities) {
+        for (int i = 0; i < quantities.length; i++) {
+            if (quantities[i] > 0 && !reserve(ITEMS[i], quantities[i])) {
+                for (int j = 0; j < i; j++) {
+                    if (quantities[j] > 0) release(ITEMS[j], quantities[j]);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Add newly delivered stock to the available pool */
+    public void restock(SupplyItem item, int quantity) {
+        if (quantity <= 0) throw new IllegalArgumentException("quantity must be > 0");
+        available.addAndGet(slot(item), quantity);
+    }
+
+    /** Reserved stock has left the store (e.g. delivered) */
+    public void commit(SupplyItem item, int quantity) {
+        reserved.addAndGet(slot(item), -quantity);
+    }
+
+    /** Return reserved stock to the available pool (e.g. cancelled or rejected) */
+    public void release(SupplyItem item, int quantity) {
+        int i = slot(item);
+        reserved.addAndGet(i, -quantity);
+        available.addAndGet(i, quantity);
+    }
+
+    /** Release several items at once, indexed by SupplyItem ordinal */
+    public void releaseAll(int[] quantities) {
+        for (int i = 0; i < quantities.length; i++) {
+            if (quantities[i] > 0) release(ITEMS[i], quantities[i]);
+        }
+    }
+
+    public int getAvailable(SupplyItem item) {
+        return available.get(slot(item));
+    }
+
+    public int getReserved(SupplyItem item) {
+        return reserved.get(slot(item));
+    }
+
+    /** Point-in-time copy of available stock per item */
+    public Map<SupplyItem, Integer> snapshot() {
+        Map<SupplyItem, Integer> copy = new EnumMap<>(SupplyItem.class);
+        for (SupplyItem item : SupplyItem.values()) {
+            copy.put(item, getAvailable(item));
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,118 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * InventoryLedgerTest — JUnit 4 tests for the lock-free supply ledger.
+ * The stress tests hammer SupplyService from many threads and check that
+ * stock is never oversold and that every unit is accounted for.
+ */
+public class InventoryLedgerTest {
+
+    private static final int THREADS = 16;
+
+    @Test
+    public void reserveFailsWhenStockInsufficient() {
+        InventoryLedger ledger = new InventoryLedger();
+        ledger.setAvailable(SupplyItem.MEDICAL, 5);
+
+        assertTrue(ledger.reserve(SupplyItem.MEDICAL, 5));
+        assertFalse("Nothing left to reserve", ledger.reserve(SupplyItem.MEDICAL, 1));
+        assertEquals(0, ledger.getAvailable(SupplyItem.MEDICAL));
+        assertEquals(5, ledger.getReserved(SupplyItem.MEDICAL));
+    }
+
+    @Test
+    public void releaseAndCommitMoveReservedStock() {
+        InventoryLedger ledger = new InventoryLedger();
+        ledger.setAvailable(SupplyItem.WATER, 10);
+        ledger.reserve(SupplyItem.WATER, 6);
+
+        ledger.release(SupplyItem.WATER, 2);
+        ledger.commit(SupplyItem.WATER, 4);
+
+        assertEquals(6, ledger.getAvailable(SupplyItem.WATER));
+        assertEquals(0, ledger.getReserved(SupplyItem.WATER));
+    }
+
+    @Test
+    public void concurrentReservationsNeverOversell() throws Exception {
+        InventoryLedger ledger = new InventoryLedger();
+        ledger.setAvailable(SupplyItem.OXYGEN, 10_000);
+        AtomicInteger granted = new AtomicInteger();
+
+        runConcurrently(t -> {
+            for (int i = 0; i < 5_000; i++) {
+                if (ledger.reserve(SupplyItem.OXYGEN, 1 + (i % 3))) {
+                    granted.addAndGet(1 + (i % 3));
+                }
+            }
+        });
+
+        assertTrue("Available stock went negative", ledger.getAvailable(SupplyItem.OXYGEN) >= 0);
+        assertEquals(10_000, granted.get() + ledger.getAvailable(SupplyItem.OXYGEN));
+        assertEquals(granted.get(), ledger.getReserved(SupplyItem.OXYGEN));
+    }
+
+    @Test
+    public void concurrentSubmitsNeverOversell() throws Exception {
+        SupplyService supply = new SupplyService();
+        int initialStock = supply.getInventory().get(SupplyItem.MEDICAL);
+        Queue<SupplyRequest> accepted = new ConcurrentLinkedQueue<>();
+
+        // Every thread uses its own residents, so only stock (never quota) limits them
+        runConcurrently(t -> {
+            for (int i = 0; i < 200; i++) {
+                supply.submitRequest("stress." + t + "." + i + "@mars.local", SupplyItem.MEDICAL, 1)
+                      .ifPresent(accepted::add);
+            }
+        });
+
+        int remaining = supply.getInventory().get(SupplyItem.MEDICAL);
+        int sold = accepted.stream().mapToInt(r -> r.quantity).sum();
+        assertTrue("Inventory went negative: " + remaining, remaining >= 0);
+        assertEquals("Every unit must be accounted for", initialStock, sold + remaining);
+
+        Set<String> ids = new HashSet<>();
+        for (SupplyRequest r : accepted) ids.add(r.requestId);
+        assertEquals("Request ids must be unique", accepted.size(), ids.size());
+    }
+
+    @Test
+    public void concurrentSubmitAndCancelRestoresStock() throws Exception {
+        SupplyService supply = new SupplyService();
+        int initialStock = supply.getInventory().get(SupplyItem.FOOD_A);
+
+        runConcurrently(t -> {
+            for (int i = 0; i < 500; i++) {
+                String user = "churn." + t + "." + i + "@mars.local";
+                supply.submitRequest(user, SupplyItem.FOOD_A, 2)
+                      .ifPresent(r -> supply.cancelRequest(user, r.requestId));
+            }
+        });
+
+        assertEquals(initialStock, (int) supply.getInventory().get(SupplyItem.FOOD_A));
+    }
+
+    private interface Worker { void run(int threadIndex) throws Exception; }
+
+    private static void runConcurrently(Worker worker) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int index = t;
+            futures.add(pool.submit(() -> {
+                start.await();
+                worker.run(index);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) f.get(30, TimeUnit.SECONDS);
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,169 @@
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token-bucket throttling for login attempts, per username and per source
+ * (e.g. terminal or address). AuthService asks before it looks the user up,
+ * so a flood of attempts is turned away without touching user state.
+ *
+ * Each bucket is a single long, the "theoretical arrival time" of the
+ * generic cell rate algorithm, which is equivalent to a token bucket:
+ * an attempt is allowed while it is no more than (burst - 1) intervals
+ * ahead of schedule. Buckets update with one CAS. A bucket that has been
+ * idle long enough is back to full, which is the same as having no bucket
+ * at all, so such buckets are swept out every few thousand calls. Each axis
+ * tracks at most maxTrackedKeys buckets; once full, new keys (typically a
+ * spray of made-up usernames) share one overflow bucket until a sweep
+ * frees room.
+ */
+public class LoginRateLimiter {
+    public static final int DEFAULT_USER_BURST = 10;
+    public static final double DEFAULT_USER_PER_SECOND = 1.0 / 6;   // 10 a minute
+    public static final int DEFAULT_SOURCE_BURST = 100;
+    public static final double DEFAULT_SOURCE_PER_SECOND = 5;
+    public static final Duration DEFAULT_IDLE_EVICTION = Duration.ofMinutes(10);
+    public static final int DEFAULT_MAX_TRACKED_KEYS = 100_000;
+
+    private static final int SWEEP_EVERY = 4096;
+
+    private final Buckets byUser;
+    private final Buckets bySource;
+    private final Clock clock;
+    private final boolean enabled;
+
+    /** Per-key limiter state: key -> theoretical arrival time (nanos) */
+    private static final class Buckets {
+        final long intervalNanos; // time to earn one attempt
+        final long toleranceNanos; // how far ahead of schedule a burst may run
+        final long idleNanos;
+        final int maxKeys;
+        final Map<String, AtomicLong> tat = new ConcurrentHashMap<>();
+        final AtomicLong overflow = new AtomicLong(); // shared by new keys while tat is full
+        final AtomicInteger calls = new AtomicInteger();
+
+        Buckets(int burst, double perSecond, Duration idleEviction, int maxKeys) {
+            if (burst <= 0) throw new IllegalArgumentException("burst must be > 0");
+            if (!(perSecond > 0)) throw new IllegalArgumentException("rate must be > 0");
+            this.intervalNanos = Math.max(1, (long) (1_000_000_000L / perSecond));
+            this.toleranceNanos = intervalNanos * (burst - 1);
+            this.idleNanos = idleEviction.toNanos();
+            this.maxKeys = maxKeys;
+        }
+
+        /** Whether an attempt would be allowed now, without taking it */
+        boolean allows(String key, long now) {
+            AtomicLong state = tat.get(key);
+            if (state == null && tat.size() >= maxKeys) state = overflow;
+            return state == null || Math.max(state.get(), now) - now <= toleranceNanos;
+        }
+
+        /** @return the bucket the attempt was taken from, or null if it is refused */
+        AtomicLong tryAcquire(String key, long now) {
+            if ((calls.incrementAndGet() & (SWEEP_EVERY - 1)) == 0) sweep(now);
+            AtomicLong state = tat.get(key);
+            if (state == null) {
+                state = tat.size() < maxKeys ? tat.computeIfAbsent(key, k -> new AtomicLong(now)) : overflow;
+            }
+            while (true) {
+                long current = state.get();
+                long from = Math.max(current, now);
+                if (from - now > toleranceNanos) return null;
+                if (state.compareAndSet(current, from + intervalNanos)) return state;
+            }
+        }
+
+        /** Give back an attempt taken from this bucket */
+        void refund(AtomicLong state) {
+            state.addAndGet(-intervalNanos);
+        }
+
+        /**
+         * Drop buckets idle past the eviction time. A racing attempt on a
+         * bucket being dropped can at worst be forgotten, and the bucket was
+         * full anyway, so this never lets through more than one extra attempt.
+         */
+        void sweep(long now) {
+            tat.values().removeIf(s -> now - s.get() > idleNanos);
+        }
+    }
+
+    /** Limiter with the default limits */
+    public LoginRateLimiter() {
+        this(DEFAULT_USER_BURST, DEFAULT_USER_PER_SECOND, DEFAULT_SOURCE_BURST, DEFAULT_SOURCE_PER_SECOND,
+                DEFAULT_IDLE_EVICTION, Clock.systemUTC());
+    }
+
+    /**
+     * @param userBurst attempts one username may make back to back
+     * @param userPerSecond sustained attempts per second for one username
+     * @param sourceBurst attempts one source may make back to back
+     * @param sourcePerSecond sustained attempts per second for one source
+     * @param idleEviction how long an untouched bucket is kept
+     */
+    public LoginRateLimiter(int userBurst, double userPerSecond, int sourceBurst, double sourcePerSecond,
+                            Duration idleEviction, Clock clock) {
+        this(userBurst, userPerSecond, sourceBurst, sourcePerSecond, idleEviction, DEFAULT_MAX_TRACKED_KEYS, clock);
+    }
+
+    /** @param maxTrackedKeys buckets kept per axis before new keys share one */
+    public LoginRateLimiter(int userBurst, double userPerSecond, int sourceBurst, double sourcePerSecond,
+                            Duration idleEviction, int maxTrackedKeys, Clock clock) {
+        if (idleEviction == null || idleEviction.isNegative())
+            throw new IllegalArgumentException("idleEviction must be >= 0");
+        if (maxTrackedKeys <= 0) throw new IllegalArgumentException("maxTrackedKeys must be > 0");
+        this.byUser = new Buckets(userBurst, userPerSecond, idleEviction, maxTrackedKeys);
+        this.bySource = new Buckets(sourceBurst, sourcePerSecond, idleEviction, maxTrackedKeys);
+        this.clock = clock;
+        this.enabled = true;
+    }
+
+    private LoginRateLimiter(boolean enabled) {
+        this.byUser = null;
+        this.bySource = null;
+        this.clock = null;
+        this.enabled = enabled;
+    }
+
+    /** Limiter that allows everything */
+    public static LoginRateLimiter unlimited() {
+        return new LoginRateLimiter(false);
+    }
+
+    /**
+     * Take one attempt from both the source's and the username's bucket, or
+     * from neither if either is empty. A null or empty source or username is
+     * not limited on that axis.
+     */
+    public boolean tryAcquire(String usernameKey, String source) {
+        if (!enabled) return true;
+        long now = clock.millis() * 1_000_000L;
+        boolean bySourceToo = source != null && !source.isEmpty();
+        if (bySourceToo && !bySource.allows(source, now)) return false;
+        if (usernameKey == null || usernameKey.isEmpty()) return !bySourceToo || bySource.tryAcquire(source, now) != null;
+
+        AtomicLong user = byUser.tryAcquire(usernameKey, now);
+        if (user == null) return false;
+        if (bySourceToo && bySource.tryAcquire(source, now) == null) { // emptied since the check
+            byUser.refund(user);
+            return false;
+        }
+        return true;
+    }
+
+    /** Buckets currently held (for monitoring) */
+    public int trackedKeys() {
+        return enabled ? byUser.tat.size() + bySource.tat.size() : 0;
+    }
+
+    /** Drop idle buckets now rather than waiting for the periodic sweep */
+    public void evictIdle() {
+        if (!enabled) return;
+        long now = clock.millis() * 1_000_000L;
+        byUser.sweep(now);
+        bySource.sweep(now);
+    }
+}
@@ -0,0 +1,95 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.time.*;
+
+/**
+ * LoginRateLimiterTest — JUnit 4 tests for login token buckets.
+ * Uses a hand-wound clock so refill and idle eviction can be stepped.
+ */
+public class LoginRateLimiterTest {
+
+    /** Clock that only moves when the test says so. */
+    private static class TestClock extends Clock {
+        private Instant now;
+        TestClock(Instant start) { this.now = start; }
+        void advance(Duration d) { now = now.plus(d); }
+        @Override public ZoneId getZone() { return ZoneOffset.UTC; }
+        @Override public Clock withZone(ZoneId zone) { return this; }
+        @Override public Instant instant() { return now; }
+    }
+
+    private final TestClock clock = new TestClock(Instant.parse("2040-03-01T08:00:00Z"));
+
+    @Test
+    public void burstThenSteadyRefill() {
+        LoginRateLimiter limiter = new LoginRateLimiter(3, 1, 100, 100, Duration.ofMinutes(1), clock);
+
+        assertTrue(limiter.tryAcquire("ana", null));
+        assertTrue(limiter.tryAcquire("ana", null));
+        assertTrue(limiter.tryAcquire("ana", null));
+        assertFalse(limiter.tryAcquire("ana", null));
+        assertTrue("other users are independent", limiter.tryAcquire("ben", null));
+
+        clock.advance(Duration.ofMillis(1000));
+        assertTrue(limiter.tryAcquire("ana", null));
+        assertFalse(limiter.tryAcquire("ana", null));
+
+        clock.advance(Duration.ofHours(1)); // refills to the burst, not beyond
+        for (int i = 0; i < 3; i++) assertTrue(limiter.tryAcquire("ana", null));
+        assertFalse(limiter.tryAcquire("ana", null));
+    }
+
+    @Test
+    public void idleBucketsAreEvicted() {
+        LoginRateLimiter limiter = new LoginRateLimiter(3, 1, 10, 1, Duration.ofMinutes(1), clock);
+        limiter.tryAcquire("ana", "term-1");
+        limiter.tryAcquire("ben", "term-1");
+        assertEquals(3, limiter.trackedKeys());
+
+        clock.advance(Duration.ofSeconds(30));
+        limiter.evictIdle();
+        assertEquals(3, limiter.trackedKeys());
+
+        clock.advance(Duration.ofMinutes(2));
+        limiter.evictIdle();
+        assertEquals(0, limiter.trackedKeys());
+    }
+
+    @Test
+    public void refusedUsernameDoesNotChargeTheSource() {
+        LoginRateLimiter limiter = new LoginRateLimiter(2, 1, 3, 1, Duration.ofMinutes(1), clock);
+        assertTrue(limiter.tryAcquire("ana", "term-1"));
+        assertTrue(limiter.tryAcquire("ana", "term-1"));
+        for (int i = 0; i < 10; i++) assertFalse(limiter.tryAcquire("ana", "term-1"));
+
+        assertTrue("one attempt left on the terminal", limiter.tryAcquire("ben", "term-1"));
+        assertFalse(limiter.tryAcquire("cy", "term-1"));
+        assertTrue("a refused source charges no username", limiter.tryAcquire("cy", "term-2"));
+        assertTrue(limiter.tryAcquire("cy", "term-2"));
+    }
+
+    @Test
+    public void newUsernamesPastTheCapShareOneBucket() {
+        LoginRateLimiter limiter = new LoginRateLimiter(2, 1, 1_000, 1_000, Duration.ofMinutes(1), 100, clock);
+        for (int i = 0; i < 100; i++) assertTrue(limiter.tryAcquire("made.up." + i, null));
+        assertEquals(100, limiter.trackedKeys());
+
+        assertTrue(limiter.tryAcquire("made.up.100", null));
+        assertTrue(limiter.tryAcquire("made.up.101", null));
+        assertFalse(limiter.tryAcquire("made.up.102", null));
+        assertEquals(100, limiter.trackedKeys());
+        assertTrue("tracked names keep their own bucket", limiter.tryAcquire("made.up.7", null));
+
+        clock.advance(Duration.ofMinutes(2));
+        limiter.evictIdle();
+        assertTrue(limiter.tryAcquire("resident@mars.local", null));
+        assertEquals(1, limiter.trackedKeys());
+    }
+
+    @Test
+    public void unlimitedAllowsEverything() {
+        LoginRateLimiter limiter = LoginRateLimiter.unlimited();
+        for (int i = 0; i < 10_000; i++) assertTrue(limiter.tryAcquire("ana", "term-1"));
+    }
+}
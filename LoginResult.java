@@ -0,0 +1,60 @@
+import java.util.Optional;
+
+/**
+ * Outcome of one AuthService.authenticate call. Each call gets its own
+ * result, so concurrent logins never see each other's errors.
+ */
+public final class LoginResult {
+
+    public enum Outcome {
+        SUCCESS,
+        EMPTY_USERNAME,
+        UNKNOWN_USER,
+        EXPIRED,
+        LOCKED,
+        BAD_PASSWORD,
+        /** Bad password that used up the last attempt and locked the account */
+        LOCKED_OUT,
+        /** Refused by the rate limiter before the account was looked at */
+        RATE_LIMITED
+    }
+
+    public final Outcome outcome;
+    public final User user;         // null unless the login succeeded
+    public final String error;      // null on success
+    public final int failedAttempts;
+    public final String sessionToken; // null unless the login succeeded
+
+    private LoginResult(Outcome outcome, User user, String error, int failedAttempts, String sessionToken) {
+        this.outcome = outcome;
+        this.user = user;
+        this.error = error;
+        this.failedAttempts = failedAttempts;
+        this.sessionToken = sessionToken;
+    }
+
+    static LoginResult success(User user, String sessionToken) {
+        return new LoginResult(Outcome.SUCCESS, user, null, 0, sessionToken);
+    }
+
+    static LoginResult failure(Outcome outcome, String error) {
+        return new LoginResult(outcome, null, error, 0, null);
+    }
+
+    static LoginResult failure(Outcome outcome, String error, int failedAttempts) {
+        return new LoginResult(outcome, null, error, failedAttempts, null);
+    }
+
+    public boolean isSuccess() {
+        return outcome == Outcome.SUCCESS;
+    }
+
+    public Optional<User> user() {
+        return Optional.ofNullable(user);
+    }
+
+    @Override
+    public String toString() {
+        return isSuccess() ? "SUCCESS " + user.username : outcome + ": " + error;
+    }
+}
@@ -0,0 +1,61 @@
+import java.time.Duration;
+
+/**
+ * PasswordHashBenchmark — helps pick the PBKDF2 cost for a login latency
+ * budget. Times one hash verification at increasing iteration counts,
+ * suggests the highest cost that fits the budget, then compares a full
+ * verify against a login served from the verified-credential cache.
+ * Usage: PasswordHashBenchmark [budgetMillis] (default 250).
+ * Numbers are indicative only, so tune on the machine that will serve logins.
+ */
+public class PasswordHashBenchmark {
+
+    private static final int[] COSTS = { 50_000, 100_000, 210_000, 400_000, 600_000, 1_000_000 };
+    private static final int SAMPLES = 5;
+
+    public static void main(String[] args) {
+        long budgetMillis = args.length > 0 ? Long.parseLong(args[0]) : 250;
+        System.out.println("=== PBKDF2 cost vs latency (budget " + budgetMillis + " ms) ===");
+
+        int suggested = 0;
+        for (int cost : COSTS) {
+            PasswordHasher hasher = new PasswordHasher(cost);
+            String stored = hasher.hash("Passw0rd!");
+            hasher.verify("Passw0rd!", stored); // warm-up
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < SAMPLES; i++) {
+                long start = System.nanoTime();
+                hasher.verify("Passw0rd!", stored);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            boolean fits = best / 1_000_000 <= budgetMillis;
+            if (fits) suggested = cost;
+            System.out.printf("%,9d iterations :: %7.1f ms%s%n", cost, best / 1e6, fits ? "" : "  (over budget)");
+        }
+        System.out.println(suggested > 0
+                ? "suggested cost: " + suggested + " iterations"
+                : "even the lowest cost is over budget");
+
+        cachedLogins(suggested > 0 ? suggested : COSTS[0]);
+    }
+
+    private static void cachedLogins(int cost) {
+        UserStore store = new UserStore(new PasswordHasher(cost));
+        store.seedSamples();
+        AuthService auth = new AuthService(store.backingMap(), 5, Duration.ofMinutes(15),
+                new AuditLog(AuditLog.DEFAULT_RECENT), new PasswordHasher(cost), new VerifiedCredentialCache(),
+                LoginRateLimiter.unlimited());
+        String user = "resident.valid@mars.local";
+        long start = System.nanoTime();
+        auth.login(user, "Passw0rd!");
+        long full = System.nanoTime() - start;
+
+        int repeats = 10_000;
+        start = System.nanoTime();
+        for (int i = 0; i < repeats; i++) auth.login(user, "Passw0rd!");
+        long cached = (System.nanoTime() - start) / repeats;
+
+        System.out.printf("=== Login at %,d iterations :: full verify %.1f ms :: cached %.1f us ===%n",
+                cost, full / 1e6, cached / 1e3);
+    }
+}
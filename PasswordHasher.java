@@ -0,0 +1,92 @@
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted PBKDF2 (HMAC-SHA256) password hashing.
+ *
+ * Hashes are stored as "pbkdf2$iterations$salt$hash" (Base64), so each one
+ * carries its own cost. Raising the iteration count later is safe: old
+ * hashes still verify, and needsRehash tells the caller to store a fresh
+ * hash the next time the plain password is at hand.
+ */
+public class PasswordHasher {
+    public static final int DEFAULT_ITERATIONS = 210_000;
+
+    private static final String PREFIX = "pbkdf2$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+
+    public PasswordHasher() {
+        this(DEFAULT_ITERATIONS);
+    }
+
+    /** @param iterations PBKDF2 cost factor; higher is slower for both us and attackers */
+    public PasswordHasher(int iterations) {
+        if (iterations <= 0) throw new IllegalArgumentException("iterations must be > 0");
+        this.iterations = iterations;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /** Encoded hash of the password with a fresh random salt */
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        Base64.Encoder b64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + b64.encodeToString(salt) + "$"
+                + b64.encodeToString(derive(password, salt, iterations));
+    }
+
+    /** True if the password matches an encoded hash (false for anything malformed) */
+    public boolean verify(String password, String encoded) {
+        if (!isHash(encoded)) return false;
+        String[] parts = encoded.split("\\$");
+        if (parts.length != 4) return false;
+        try {
+            int cost = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            return cost > 0 && MessageDigest.isEqual(expected, derive(password, salt, cost));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /** True if the stored value is not a hash at this cost (plaintext or another cost) */
+    public boolean needsRehash(String stored) {
+        return !isHash(stored) || !stored.startsWith(PREFIX + iterations + "$");
+    }
+
+    /** True if the stored value is an encoded hash rather than a legacy plaintext password */
+    public static boolean isHash(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    private static byte[] derive(String password, byte[] salt, int cost) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, cost, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " unavailable", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    /** Constant-time comparison for legacy plaintext passwords */
+    static boolean plaintextEquals(String stored, String password) {
+        if (stored == null) return false;
+        return MessageDigest.isEqual(stored.getBytes(StandardCharsets.UTF_8), password.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,84 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.time.Duration;
+
+/**
+ * PasswordHasherTest — JUnit 4 tests for salted password hashing, cost
+ * upgrades and the verified-credential cache. Low iteration counts keep
+ * the tests fast; the format is the same at any cost.
+ */
+public class PasswordHasherTest {
+
+    private final PasswordHasher hasher = new PasswordHasher(1_000);
+
+    @Test
+    public void hashesAreSaltedAndVerify() {
+        String a = hasher.hash("Passw0rd!");
+        String b = hasher.hash("Passw0rd!");
+
+        assertNotEquals("fresh salt per hash", a, b);
+        assertTrue(a.startsWith("pbkdf2$1000$"));
+        assertTrue(hasher.verify("Passw0rd!", a));
+        assertFalse(hasher.verify("passw0rd!", a));
+        assertFalse(hasher.verify("Passw0rd!", "Passw0rd!"));
+        assertFalse(hasher.verify("x", "pbkdf2$oops"));
+    }
+
+    @Test
+    public void raisingTheCostKeepsOldHashesValid() {
+        String old = hasher.hash("Passw0rd!");
+        PasswordHasher stronger = new PasswordHasher(2_000);
+
+        assertTrue(stronger.verify("Passw0rd!", old));
+        assertTrue(stronger.needsRehash(old));
+        assertFalse(stronger.needsRehash(stronger.hash("Passw0rd!")));
+        assertTrue(stronger.needsRehash("Passw0rd!"));
+    }
+
+    @Test
+    public void storeHashesOnEveryWritePath() throws Exception {
+        UserStore store = new UserStore(hasher);
+        store.seedSamples();
+        store.addNew("new.settler@mars.local", "Hab1tat!", AccountStatus.ACTIVE, Role.COLONY_RESIDENT);
+        store.addAll(new StringReader("csv.settler@mars.local,Imp0rted!,ACTIVE,COLONY_RESIDENT\n"));
+        User saved = new User("U9999", "saved@mars.local", "S4ved!", AccountStatus.ACTIVE, Role.COLONY_RESIDENT);
+        store.save(saved);
+
+        assertTrue(hasher.verify("Passw0rd!", store.get("resident.valid@mars.local").password));
+        assertTrue(hasher.verify("Hab1tat!", store.get("new.settler@mars.local").password));
+        assertTrue(hasher.verify("Imp0rted!", store.get("csv.settler@mars.local").password));
+        assertTrue(hasher.verify("S4ved!", saved.password));
+        for (User u : store.getUserList()) assertTrue(u.username, PasswordHasher.isHash(u.password));
+
+        String exported = store.get("csv.settler@mars.local").password;
+        store.addAll(new StringReader("copy.settler@mars.local," + exported + ",ACTIVE,COLONY_RESIDENT\n"));
+        assertEquals("an encoded hash is kept as is", exported, store.get("copy.settler@mars.local").password);
+    }
+
+    @Test
+    public void loginUpgradesOlderHashesAndCachesTheCheck() {
+        UserStore store = new UserStore(new PasswordHasher(500));
+        store.seedSamples();
+        VerifiedCredentialCache cache = new VerifiedCredentialCache(Duration.ofMinutes(1), 100);
+        AuthService auth = new AuthService(store.backingMap(), 5, Duration.ofMinutes(15),
+                new AuditLog(64), hasher, cache);
+        User u = store.get("resident.valid@mars.local");
+        assertTrue(hasher.needsRehash(u.password));
+
+        assertTrue(auth.login(u.username, "Passw0rd!").isPresent());
+        assertFalse(hasher.needsRehash(u.password));
+        assertEquals(1, cache.size());
+        assertTrue(cache.isVerified(u.username, u.password, "Passw0rd!"));
+        assertFalse(cache.isVerified(u.username, u.password, "wrong"));
+
+        assertTrue(auth.login(u.username, "Passw0rd!").isPresent());
+        assertFalse(auth.login(u.username, "wrong").isPresent());
+
+        auth.setPassword(u, "N3wPass!");
+        assertFalse(cache.isVerified(u.username, u.password, "Passw0rd!"));
+        assertFalse(auth.login(u.username, "Passw0rd!").isPresent());
+        assertTrue(auth.login(u.username, "N3wPass!").isPresent());
+    }
+}
@@ -0,0 +1,238 @@
+import java.util.*;
+
+/**
+ * Immutable sorted map (AVL tree) with structural sharing.
+ * put/remove return a new map in O(log n) and share every untouched
+ * subtree with the old one, so holding on to an old version (a snapshot)
+ * costs nothing until the live map moves on. Safe to read from any
+ * thread without locking.
+ */
+public final class PersistentSortedMap<K extends Comparable<? super K>, V> implements Iterable<Map.Entry<K, V>> {
+    @SuppressWarnings("rawtypes")
+    private static final PersistentSortedMap EMPTY = new PersistentSortedMap<>(null);
+
+    private final Node<K, V> root;
+
+    @SuppressWarnings("serial") // never serialised; the entry supertype just saves a wrapper per node
+    private static final class Node<K, V> extends AbstractMap.SimpleImmutableEntry<K, V> {
+        final Node<K, V> left;
+        final Node<K, V> right;
+        final int height;
+        final int size;
+
+        Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+            super(key, value);
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+            this.size = 1 + size(left) + size(right);
+        }
+    }
+
+    private PersistentSortedMap(Node<K, V> root) {
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K extends Comparable<? super K>, V> PersistentSortedMap<K, V> empty() {
+        return (PersistentSortedMap<K, V>) EMPTY;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public V get(K key) {
+        Node<K, V> n = root;
+        while (n != null) {
+            int c = key.compareTo(n.getKey());
+            if (c == 0) return n.getValue();
+            n = c < 0 ? n.left : n.right;
+        }
+        return null;
+    }
+
+    public V getOrDefault(K key, V fallback) {
+        V v = get(key);
+        return v == null ? fallback : v;
+    }
+
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    /** New map with key bound to value (values must be non-null) */
+    public PersistentSortedMap<K, V> put(K key, V value) {
+        if (key == null || value == null) throw new NullPointerException("null key or value");
+        Node<K, V> updated = put(root, key, value);
+        return updated == root ? this : new PersistentSortedMap<>(updated);
+    }
+
+    /** New map without key (this map if the key is absent) */
+    public PersistentSortedMap<K, V> remove(K key) {
+        Node<K, V> updated = remove(root, key);
+        return updated == root ? this : new PersistentSortedMap<>(updated);
+    }
+
+    /** Entries in ascending key order */
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new InOrder<>(root, null, null);
+    }
+
+    /**
+     * Entries with from <= key <= to in ascending key order. Only the path
+     * to the first match is walked up front, so a scan costs O(log n + k).
+     */
+    public Iterator<Map.Entry<K, V>> range(K from, K to) {
+        if (from == null || to == null) throw new NullPointerException("null bound");
+        return new InOrder<>(root, from, to);
+    }
+
+    /** Read-only java.util.Map view of this version */
+    public Map<K, V> asMap() {
+        return new AbstractMap<K, V>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public V get(Object key) {
+                return key == null ? null : PersistentSortedMap.this.get((K) key);
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return get(key) != null;
+            }
+
+            @Override
+            public int size() {
+                return PersistentSortedMap.this.size();
+            }
+
+            @Override
+            public Set<Entry<K, V>> entrySet() {
+                return new AbstractSet<Entry<K, V>>() {
+                    public Iterator<Entry<K, V>> iterator() { return PersistentSortedMap.this.iterator(); }
+                    public int size() { return PersistentSortedMap.this.size(); }
+                };
+            }
+        };
+    }
+
+    // ===== AVL internals (path copying) =====
+
+    private static int height(Node<?, ?> n) {
+        return n == null ? 0 : n.height;
+    }
+
+    private static int size(Node<?, ?> n) {
+        return n == null ? 0 : n.size;
+    }
+
+    private static <K extends Comparable<? super K>, V> Node<K, V> put(Node<K, V> n, K key, V value) {
+        if (n == null) return new Node<>(key, value, null, null);
+        int c = key.compareTo(n.getKey());
+        if (c == 0) {
+            return n.getValue() == value ? n : new Node<>(key, value, n.left, n.right);
+        }
+        if (c < 0) {
+            Node<K, V> l = put(n.left, key, value);
+            return l == n.left ? n : balance(n.getKey(), n.getValue(), l, n.right);
+        }
+        Node<K, V> r = put(n.right, key, value);
+        return r == n.right ? n : balance(n.getKey(), n.getValue(), n.left, r);
+    }
+
+    private static <K extends Comparable<? super K>, V> Node<K, V> remove(Node<K, V> n, K key) {
+        if (n == null) return null;
+        int c = key.compareTo(n.getKey());
+        if (c < 0) {
+            Node<K, V> l = remove(n.left, key);
+            return l == n.left ? n : balance(n.getKey(), n.getValue(), l, n.right);
+        }
+        if (c > 0) {
+            Node<K, V> r = remove(n.right, key);
+            return r == n.right ? n : balance(n.getKey(), n.getValue(), n.left, r);
+        }
+        if (n.left == null) return n.right;
+        if (n.right == null) return n.left;
+        Node<K, V> min = n.right;
+        while (min.left != null) min = min.left;
+        return balance(min.getKey(), min.getValue(), n.left, removeMin(n.right));
+    }
+
+    private static <K, V> Node<K, V> removeMin(Node<K, V> n) {
+        if (n.left == null) return n.right;
+        return balance(n.getKey(), n.getValue(), removeMin(n.left), n.right);
+    }
+
+    private static <K, V> Node<K, V> balance(K key, V value, Node<K, V> l, Node<K, V> r) {
+        int diff = height(l) - height(r);
+        if (diff > 1) {
+            if (height(l.left) >= height(l.right)) {
+                return new Node<>(l.getKey(), l.getValue(), l.left, new Node<>(key, value, l.right, r));
+            }
+            Node<K, V> lr = l.right;
+            return new Node<>(lr.getKey(), lr.getValue(),
+                    new Node<>(l.getKey(), l.getValue(), l.left, lr.left),
+                    new Node<>(key, value, lr.right, r));
+        }
+        if (diff < -1) {
+            if (height(r.right) >= height(r.left)) {
+                return new Node<>(r.getKey(), r.getValue(), new Node<>(key, value, l, r.left), r.right);
+            }
+            Node<K, V> rl = r.left;
+            return new Node<>(rl.getKey(), rl.getValue(),
+                    new Node<>(key, value, l, rl.left),
+                    new Node<>(r.getKey(), r.getValue(), rl.right, r.right));
+        }
+        return new Node<>(key, value, l, r);
+    }
+
+    /** In-order walk, optionally bounded to [from, to] (null = unbounded) */
+    private static final class InOrder<K extends Comparable<? super K>, V> implements Iterator<Map.Entry<K, V>> {
+        private final Deque<Node<K, V>> stack = new ArrayDeque<>();
+        private final K from;
+        private final K to;
+
+        InOrder(Node<K, V> root, K from, K to) {
+            this.from = from;
+            this.to = to;
+            pushLeft(root);
+            dropPastEnd();
+        }
+
+        /** Push the left spine, skipping subtrees that lie wholly below from */
+        private void pushLeft(Node<K, V> n) {
+            while (n != null) {
+                if (from != null && n.getKey().compareTo(from) < 0) {
+                    n = n.right;
+                } else {
+                    stack.push(n);
+                    n = n.left;
+                }
+            }
+        }
+
+        private void dropPastEnd() {
+            if (to != null && !stack.isEmpty() && stack.peek().getKey().compareTo(to) > 0) stack.clear();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (stack.isEmpty()) throw new NoSuchElementException();
+            Node<K, V> n = stack.pop();
+            pushLeft(n.right);
+            dropPastEnd();
+            return n;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Daily per-user supply quota accounting.
+ * Each user has one bucket: the colony day it covers plus a used/limit
+ * counter per SupplyItem (primitive arrays indexed by ordinal). Submits and
+ * cancels adjust the counters in place, so a quota check is O(1) and
+ * does not depend on how many requests the user has ever filed.
+ * A bucket is reset lazily the first time it is touched on a new day.
+ * Days are counted on the ledger's own clock: consume() returns the day it
+ * charged, and refunds name that day, so a caller's timestamps never have
+ * to agree with the ledger's clock.
+ */
+public class QuotaLedger {
+    public static final int DEFAULT_DAILY_QUOTA = 10;
+    /** consume() result when the quantity does not fit in today's limit */
+    public static final long REJECTED = Long.MIN_VALUE;
+
+    private static final int ITEMS = SupplyItem.values().length;
+
+    private final Clock clock;
+    private final ZoneId zone;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    // Cached [start, end) of the current day so the hot path only reads the clock
+    private volatile DayWindow window;
+
+    private static final class DayWindow {
+        final long epochDay;
+        final long startMillis;
+        final long endMillis;
+
+        DayWindow(long epochDay, long startMillis, long endMillis) {
+            this.epochDay = epochDay;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+        }
+    }
+
+    private static final class Bucket {
+        long day;
+        final int[] used = new int[ITEMS];
+        final int[] limit = new int[ITEMS];
+
+        Bucket(long day) {
+            this.day = day;
+            Arrays.fill(limit, DEFAULT_DAILY_QUOTA);
+        }
+
+        void rollTo(long today) {
+            if (day != today) {
+                day = today;
+                Arrays.fill(used, 0);
+            }
+        }
+    }
+
+    public QuotaLedger() {
+        this(Clock.systemDefaultZone());
+    }
+
+    public QuotaLedger(Clock clock) {
+        this.clock = clock;
+        this.zone = clock.getZone();
+        this.window = windowFor(clock.millis());
+    }
+
+    /**
+     * Atomically check and consume quota for today.
+     * @return false (and change nothing) if it would exceed the daily limit
+     */
+    public boolean tryConsume(String username, SupplyItem item, int quantity) {
+        return consume(username, item, quantity) != REJECTED;
+    }
+
+    /**
+     * Like tryConsume, but returns the colony day (epoch day) the quota was
+     * charged to, or REJECTED; pass the day to refund() to give it back.
+     */
+    public long consume(String username, SupplyItem item, int quantity) {
+        long today = today();
+        Bucket b = bucket(username, today);
+        int i = item.ordinal();
+        synchronized (b) {
+            b.rollTo(today);
+            if (b.used[i] + quantity > b.limit[i]) return REJECTED;
+            b.used[i] += quantity;
+            return today;
+        }
+    }
+
+    /**
+     * Atomically check and consume quota for several items at once,
+     * indexed by SupplyItem ordinal. Nothing is consumed unless every
+     * line fits within today's limits.
+     */
+    public boolean tryConsumeAll(String username, int[] quantities) {
+        return consumeAll(username, quantities) != REJECTED;
+    }
+
+    /** Like tryConsumeAll, but returns the day charged, or REJECTED */
+    public long consumeAll(String username, int[] quantities) {
+        long today = today();
+        Bucket b = bucket(username, today);
+        synchronized (b) {
+            b.rollTo(today);
+            for (int i = 0; i < quantities.length; i++) {
+                if (b.used[i] + quantities[i] > b.limit[i]) return REJECTED;
+            }
+            for (int i = 0; i < quantities.length; i++) {
+                b.used[i] += quantities[i];
+            }
+            return today;
+        }
+    }
+
+    /**
+     * Give back quota consumed at the given time (e.g. a cancelled request).
+     * Quota from a previous day has already been rolled over, so it is ignored.
+     */
+    public void refund(String username, SupplyItem item, int quantity, Instant consumedAt) {
+        refund(username, item, quantity, dayOf(consumedAt));
+    }
+
+    /** Give back quota charged to the given day, as returned by consume() */
+    public void refund(String username, SupplyItem item, int quantity, long consumedDay) {
+        Bucket b = buckets.get(username);
+        if (b == null) return;
+        int i = item.ordinal();
+        synchronized (b) {
+            b.rollTo(today());
+            if (b.day == consumedDay) {
+                b.used[i] = Math.max(0, b.used[i] - quantity);
+            }
+        }
+    }
+
+    /**
+     * Re-apply quota consumed at the given time without a limit check
+     * (used when rebuilding state from the supply journal).
+     */
+    public void restore(String username, SupplyItem item, int quantity, Instant consumedAt) {
+        restore(username, item, quantity, dayOf(consumedAt));
+    }
+
+    /** Re-apply quota charged to the given day without a limit check */
+    public void restore(String username, SupplyItem item, int quantity, long consumedDay) {
+        long today = today();
+        if (consumedDay != today) return;
+        Bucket b = bucket(username, today);
+        synchronized (b) {
+            b.rollTo(today);
+            b.used[item.ordinal()] += quantity;
+        }
+    }
+
+    public int getUsedToday(String username, SupplyItem item) {
+        Bucket b = buckets.get(username);
+        if (b == null) return 0;
+        synchronized (b) {
+            b.rollTo(today());
+            return b.used[item.ordinal()];
+        }
+    }
+
+    public int getRemaining(String username, SupplyItem item) {
+        Bucket b = buckets.get(username);
+        if (b == null) return DEFAULT_DAILY_QUOTA;
+        int i = item.ordinal();
+        synchronized (b) {
+            b.rollTo(today());
+            return b.limit[i] - b.used[i];
+        }
+    }
+
+    /** Override a user's daily limit for one item */
+    public void setDailyQuota(String username, SupplyItem item, int limit) {
+        if (limit < 0) throw new IllegalArgumentException("limit must be >= 0");
+        Bucket b = bucket(username, today());
+        synchronized (b) {
+            b.limit[item.ordinal()] = limit;
+        }
+    }
+
+    /** Colony day (epoch day in the ledger's zone) of an instant */
+    private long dayOf(Instant instant) {
+        return LocalDate.ofInstant(instant, zone).toEpochDay();
+    }
+
+    private Bucket bucket(String username, long today) {
+        Bucket b = buckets.get(username);
+        if (b == null) {
+            b = buckets.computeIfAbsent(username, k -> new Bucket(today));
+        }
+        return b;
+    }
+
+    /** Colony day (epoch day in the ledger's zone) right now */
+    public long today() {
+        long now = clock.millis();
+        DayWindow w = window;
+        if (now < w.startMillis || now >= w.endMillis) {
+            w = windowFor(now);
+            window = w;
+        }
+        return w.epochDay;
+    }
+
+    private DayWindow windowFor(long now) {
+        LocalDate date = LocalDate.ofInstant(Instant.ofEpochMilli(now), zone);
+        return new DayWindow(date.toEpochDay(),
+                date.atStartOfDay(zone).toInstant().toEpochMilli(),
+                date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli());
+    }
+}
@@ -0,0 +1,85 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.time.*;
+
+/**
+ * QuotaLedgerTest — JUnit 4 tests for daily supply quota accounting.
+ * Uses a hand-wound clock so the midnight rollover can be tested directly.
+ */
+public class QuotaLedgerTest {
+
+    /** Clock that only moves when the test says so. */
+    private static class TestClock extends Clock {
+        private Instant now;
+        TestClock(Instant start) { this.now = start; }
+        void advance(Duration d) { now = now.plus(d); }
+        @Override public ZoneId getZone() { return ZoneOffset.UTC; }
+        @Override public Clock withZone(ZoneId zone) { return this; }
+        @Override public Instant instant() { return now; }
+    }
+
+    private final TestClock clock = new TestClock(Instant.parse("2040-03-01T22:00:00Z"));
+
+    @Test
+    public void consumeStopsAtDailyLimit() {
+        QuotaLedger quotas = new QuotaLedger(clock);
+
+        assertTrue(quotas.tryConsume("ana@mars.local", SupplyItem.WATER, 7));
+        assertFalse("Would exceed the limit", quotas.tryConsume("ana@mars.local", SupplyItem.WATER, 4));
+        assertEquals(3, quotas.getRemaining("ana@mars.local", SupplyItem.WATER));
+        assertEquals("Other items are independent", 10, quotas.getRemaining("ana@mars.local", SupplyItem.OXYGEN));
+    }
+
+    @Test
+    public void quotaResetsAtMidnight() {
+        QuotaLedger quotas = new QuotaLedger(clock);
+        quotas.tryConsume("ana@mars.local", SupplyItem.FOOD_A, 10);
+        assertEquals(0, quotas.getRemaining("ana@mars.local", SupplyItem.FOOD_A));
+
+        clock.advance(Duration.ofHours(3)); // 01:00 next day
+
+        assertEquals(0, quotas.getUsedToday("ana@mars.local", SupplyItem.FOOD_A));
+        assertTrue(quotas.tryConsume("ana@mars.local", SupplyItem.FOOD_A, 10));
+    }
+
+    @Test
+    public void refundOnlyAppliesToToday() {
+        QuotaLedger quotas = new QuotaLedger(clock);
+        Instant yesterday = clock.instant();
+        quotas.tryConsume("ana@mars.local", SupplyItem.OXYGEN, 4);
+        quotas.refund("ana@mars.local", SupplyItem.OXYGEN, 1, yesterday);
+        assertEquals(3, quotas.getUsedToday("ana@mars.local", SupplyItem.OXYGEN));
+
+        clock.advance(Duration.ofHours(3));
+        quotas.tryConsume("ana@mars.local", SupplyItem.OXYGEN, 2);
+        quotas.refund("ana@mars.local", SupplyItem.OXYGEN, 3, yesterday);
+
+        assertEquals("Yesterday's refund must not free today's quota",
+                2, quotas.getUsedToday("ana@mars.local", SupplyItem.OXYGEN));
+    }
+
+    @Test
+    public void cancelledRequestGivesQuotaBack() {
+        SupplyService supply = new SupplyService();
+        SupplyRequest req = supply.submitRequest("ben@mars.local", SupplyItem.WATER, 10).get();
+        assertEquals(0, supply.getRemainingQuota("ben@mars.local", SupplyItem.WATER));
+
+        assertTrue(supply.cancelRequest("ben@mars.local", req.requestId));
+
+        assertEquals(10, supply.getRemainingQuota("ben@mars.local", SupplyItem.WATER));
+    }
+
+    @Test
+    public void cancelRefundsOnTheLedgersClock() {
+        // The ledger's day (2040) has nothing to do with the request's wall-clock timestamp
+        SupplyService supply = new SupplyService(new QuotaLedger(clock));
+        SupplyRequest req = supply.submitRequest("cy@mars.local", SupplyItem.OXYGEN, 6).get();
+        assertTrue(supply.updateStatus(req.requestId, RequestStatus.DECLINED));
+        assertEquals(10, supply.getRemainingQuota("cy@mars.local", SupplyItem.OXYGEN));
+
+        req = supply.submitRequest("cy@mars.local", SupplyItem.OXYGEN, 6).get();
+        assertTrue(supply.cancelRequest("cy@mars.local", req.requestId));
+        assertEquals(10, supply.getRemainingQuota("cy@mars.local", SupplyItem.OXYGEN));
+    }
+}
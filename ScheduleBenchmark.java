@@ -0,0 +1,82 @@
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * ScheduleBenchmark — rough throughput comparison for the resident
+ * "today's tasks" read path. Compares getTasks, which returns the stored
+ * pre-sorted day list, against the old copy-and-sort on every read.
+ * Run from BlueJ (void main) or the command line; numbers are indicative
+ * only, so compare runs on the same machine.
+ */
+public class ScheduleBenchmark {
+
+    private static final int USERS = 1_000;
+    private static final int TASKS_PER_DAY = 12;
+    private static final int READS = 2_000_000;
+    private static final int ROUNDS = 5;
+    private static final LocalDate DAY = LocalDate.of(2040, 3, 1);
+
+    private static final String[] NAMES = new String[USERS];
+
+    private static final Comparator<Task> ORDER =
+            Comparator.comparing((Task t) -> t.time).thenComparingInt(t -> t.priority);
+
+    public static void main(String[] args) {
+        ScheduleService schedule = populate();
+        System.out.println("=== Schedule read benchmark (" + READS + " reads, "
+                + TASKS_PER_DAY + " tasks/day) ===");
+        for (int round = 1; round <= ROUNDS; round++) {
+            long sorting = timeCopyAndSort(schedule);
+            long presorted = timePresorted(schedule);
+            System.out.printf("round %d :: copy+sort %,d reads/s :: pre-sorted %,d reads/s :: speedup %.2fx%n",
+                    round, perSecond(sorting), perSecond(presorted), (double) sorting / presorted);
+        }
+    }
+
+    private static ScheduleService populate() {
+        ScheduleService schedule = new ScheduleService();
+        Random random = new Random(42);
+        for (int u = 0; u < USERS; u++) {
+            for (int i = 0; i < TASKS_PER_DAY; i++) {
+                schedule.upsertTask(user(u), new Task("u" + u + "t" + i, "Task " + i, 1 + random.nextInt(3),
+                        DAY, LocalTime.of(6 + random.nextInt(14), 15 * random.nextInt(4))));
+            }
+        }
+        return schedule;
+    }
+
+    /** What every read used to do */
+    private static long timeCopyAndSort(ScheduleService schedule) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < READS; i++) {
+            List<Task> copy = new ArrayList<>(schedule.getTasks(user(i % USERS), DAY));
+            copy.sort(ORDER);
+            sink += copy.get(0).priority;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) System.out.println();
+        return elapsed;
+    }
+
+    private static long timePresorted(ScheduleService schedule) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < READS; i++) {
+            sink += schedule.getTasks(user(i % USERS), DAY).get(0).priority;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) System.out.println();
+        return elapsed;
+    }
+
+    private static String user(int i) {
+        if (NAMES[i] == null) NAMES[i] = "bench." + i + "@mars.local";
+        return NAMES[i];
+    }
+
+    private static long perSecond(long nanos) {
+        return READS * 1_000_000_000L / Math.max(1, nanos);
+    }
+}
@@ -2,18 +2,70 @@ import java.time.Instant;
 import java.time.LocalDate;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Per-user task calendars.
+ * The whole schedule is one immutable value (user -> day -> task list) built
+ * from persistent maps. Writers build a new version under a lock, sharing
+ * every untouched user and day with the old one, and publish it with a
+ * single volatile write. Readers and snapshots just take the current
+ * version, so they never copy and never see a half-applied write.
+ *
+ * Each day's list is kept sorted by (time, priority) as it is written, so
+ * getTasks hands out the stored list as is.
+ */
 public class ScheduleService {
-    private final Map<String, Map<LocalDate, List<Task>>> store = new ConcurrentHashMap<>();
+    private volatile PersistentSortedMap<String, PersistentSortedMap<LocalDate, List<Task>>> store =
+            PersistentSortedMap.empty();
+    private final Object writeLock = new Object();
+
+    // Day list order; ties keep the order the tasks were written in
+    private static final Comparator<Task> ORDER =
+            Comparator.comparing((Task t) -> t.time).thenComparingInt(t -> t.priority);
     private final Map<String, Instant> lastUpdate = new ConcurrentHashMap<>();
+
+    // Change tracking for incremental backups: every write bumps a version,
+    // recorded per user (alongside lastUpdate) and per (user, day) partition
+    private final AtomicLong version = new AtomicLong();
+    private final Map<String, Long> userVersions = new ConcurrentHashMap<>();
+    private final Map<String, Map<LocalDate, Long>> dayVersions = new ConcurrentHashMap<>();
+    // Version of the last restore; changes before it cannot be expressed as a diff
+    private volatile long restoreVersion;
     
-    // Array storage for all tasks across all users
-    private final List<Task> allTasksList = new ArrayList<>();
+    // User -> task id -> where it lives; ids are only unique within one user's calendar
+    private final Map<String, Map<String, TaskLocation>> taskIndex = new ConcurrentHashMap<>();
+    // getAllTasksArray result, valid while its version is still current
+    private volatile AllTasks allTasksCache;
+
+    /** Where a task is stored in the schedule */
+    public static final class TaskLocation {
+        public final String username;
+        public final LocalDate date;
+        public final Task task;
+
+        TaskLocation(String username, LocalDate date, Task task) {
+            this.username = username;
+            this.date = date;
+            this.task = task;
+        }
+    }
+
+    private static final class AllTasks {
+        final long version;
+        final Task[] tasks;
+
+        AllTasks(long version, Task[] tasks) {
+            this.version = version;
+            this.tasks = tasks;
+        }
+    }
 
     public void seedResidentTasks(String username) {
-        Map<LocalDate, List<Task>> cal = store.computeIfAbsent(username, k -> new ConcurrentHashMap<>());
         LocalDate today = LocalDate.now();
 
         Task[] todaysTasks = new Task[] { // Array of tasks
@@ -26,52 +78,117 @@ public class ScheduleService {
             new Task("t4", "Soil sample catalog", 2, today.plusDays(1), java.time.LocalTime.of(11, 0))
         };
 
-        // Add to map storage
-        cal.put(today, new ArrayList<>(Arrays.asList(todaysTasks)));
-        cal.put(today.plusDays(1), new ArrayList<>(Arrays.asList(tomorrowsTasks)));
+        synchronized (writeLock) {
+            // Add to map storage; the two days are replaced wholesale
+            PersistentSortedMap<LocalDate, List<Task>> cal = store.getOrDefault(username, PersistentSortedMap.empty());
+            cal = cal.put(today, sorted(Arrays.asList(todaysTasks)));
+            cal = cal.put(today.plusDays(1), sorted(Arrays.asList(tomorrowsTasks)));
+
+            List<Task> seeded = new ArrayList<>(Arrays.asList(todaysTasks));
+            seeded.addAll(Arrays.asList(tomorrowsTasks));
+            List<LocalDate> vacated = new ArrayList<>();
+            Map<String, TaskLocation> indexed = taskIndex.get(username);
+            if (indexed != null) {
+                indexed.values().removeIf(loc -> loc.date.equals(today) || loc.date.equals(today.plusDays(1)));
+                for (Task t : seeded) {
+                    LocalDate from = movedFrom(username, t);
+                    if (from == null) continue;
+                    cal = cal.put(from, withoutTask(cal.getOrDefault(from, Collections.emptyList()), t.id));
+                    vacated.add(from);
+                }
+            }
+            store = store.put(username, cal);
 
-        // Add to array storage
-        allTasksList.addAll(Arrays.asList(todaysTasks));
-        allTasksList.addAll(Arrays.asList(tomorrowsTasks));
+            for (Task t : seeded) index(username, t);
 
-        lastUpdate.put(username, Instant.now());
+            lastUpdate.put(username, Instant.now());
+            for (LocalDate d : vacated) markChanged(username, d);
+            markChanged(username, today);
+            markChanged(username, today.plusDays(1));
+        }
     }
 
+    /** The day's tasks ordered by time, then priority (read-only, never copied) */
     public List<Task> getTasks(String username, LocalDate date) {
-        List<Task> list = store
-            .getOrDefault(username, Collections.emptyMap())
-            .getOrDefault(date, new ArrayList<Task>());
-        List<Task> copy = new ArrayList<>(list);
-        copy.sort(Comparator.comparing((Task t) -> t.time).thenComparingInt(t -> t.priority));
-        return copy;
+        return dayOf(store, username, date);
     }
 
     public void upsertTask(String username, Task task) {
-        Map<LocalDate, List<Task>> cal = store.computeIfAbsent(username, k -> new ConcurrentHashMap<>());
-        List<Task> day = cal.computeIfAbsent(task.date, k -> new ArrayList<>());
-        
-        // Remove existing task with same ID
-        day.removeIf(t -> t.id.equals(task.id));
-        // Remove from array storage if exists
-        allTasksList.removeIf(t -> t.id.equals(task.id));
-        
-        day.add(task);
-        allTasksList.add(task); // Add to array storage
-        lastUpdate.put(username, Instant.now());
-    }
-
-    // Get all tasks as array
+        synchronized (writeLock) {
+            PersistentSortedMap<LocalDate, List<Task>> cal = store.getOrDefault(username, PersistentSortedMap.empty());
+            LocalDate from = movedFrom(username, task);
+            if (from != null) {
+                cal = cal.put(from, withoutTask(cal.getOrDefault(from, Collections.emptyList()), task.id));
+            }
+            List<Task> day = cal.getOrDefault(task.date, Collections.emptyList());
+
+            store = store.put(username, cal.put(task.date, withTask(day, task)));
+
+            index(username, task);
+            lastUpdate.put(username, Instant.now());
+            if (from != null) markChanged(username, from);
+            markChanged(username, task.date);
+        }
+    }
+
+    // Get all tasks as array (one per user and task id)
     public Task[] getAllTasksArray() {
-        return allTasksList.toArray(new Task[0]);
+        AllTasks cached = allTasksCache;
+        if (cached == null || cached.version != version.get()) {
+            // Read the version first: a write landing mid-build bumps it and
+            // makes this result stale on the next call rather than wrong forever
+            long v = version.get();
+            List<Task> tasks = new ArrayList<>();
+            for (Map<String, TaskLocation> userTasks : taskIndex.values()) {
+                for (TaskLocation loc : userTasks.values()) tasks.add(loc.task);
+            }
+            cached = new AllTasks(v, tasks.toArray(new Task[0]));
+            allTasksCache = cached;
+        }
+        return cached.tasks.clone();
+    }
+
+    /** Where the user's task with this id is stored, or null if there is none */
+    public TaskLocation findTask(String username, String taskId) {
+        Map<String, TaskLocation> userTasks = taskIndex.get(username);
+        return userTasks == null ? null : userTasks.get(taskId);
+    }
+
+    /**
+     * The user's tasks from one day to another (both inclusive), day by day
+     * and in getTasks order within a day. Days outside the window are never
+     * visited, so this costs O(log days + k) and runs lazily over the
+     * schedule as it was when called.
+     */
+    public Stream<Task> getTasks(String username, LocalDate from, LocalDate to) {
+        PersistentSortedMap<LocalDate, List<Task>> cal = store.get(username);
+        if (cal == null || from.isAfter(to)) return Stream.empty();
+        return stream(cal.range(from, to)).flatMap(d -> d.getValue().stream());
+    }
+
+    /**
+     * Operator view: every resident's tasks in a date window (both inclusive),
+     * ordered by username, then day, then time and priority.
+     */
+    public Stream<TaskLocation> getTasksInWindow(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) return Stream.empty();
+        return stream(store.iterator()).flatMap(u ->
+                stream(u.getValue().range(from, to)).flatMap(d ->
+                        d.getValue().stream().map(t -> new TaskLocation(u.getKey(), d.getKey(), t))));
     }
 
-    // Get tasks for specific user as array
+    private static <T> Stream<T> stream(Iterator<T> it) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    // Get tasks for specific user as array, in date order
     public Task[] getUserTasksArray(String username) {
         List<Task> userTasks = new ArrayList<>();
-        Map<LocalDate, List<Task>> userSchedule = store.get(username);
+        PersistentSortedMap<LocalDate, List<Task>> userSchedule = store.get(username);
         if (userSchedule != null) {
-            for (List<Task> tasks : userSchedule.values()) {
-                userTasks.addAll(tasks);
+            for (Map.Entry<LocalDate, List<Task>> day : userSchedule) {
+                userTasks.addAll(day.getValue());
             }
         }
         return userTasks.toArray(new Task[0]);
@@ -81,31 +198,192 @@ public class ScheduleService {
         return lastUpdate.getOrDefault(username, Instant.EPOCH);
     }
 
-    public Map<String, Map<LocalDate, List<Task>>> snapshot() {
-        Map<String, Map<LocalDate, List<Task>>> snap = new HashMap<>();
-        for (Map.Entry<String, Map<LocalDate, List<Task>>> e : store.entrySet()) {
+    /** Version of the most recent write; pass to changesSince later */
+    public long currentVersion() {
+        return version.get();
+    }
+
+    /**
+     * False if a restore happened after the given version; the store was
+     * replaced wholesale, so only a full backup can describe it.
+     */
+    public boolean canDiffSince(long sinceVersion) {
+        return restoreVersion <= sinceVersion;
+    }
+
+    /**
+     * Copies of only the (user, day) partitions written after the given
+     * version. Users with no newer writes are skipped without looking at
+     * their days, so the cost follows the churn rather than the data size.
+     */
+    public Map<String, Map<LocalDate, List<Task>>> changesSince(long sinceVersion) {
+        PersistentSortedMap<String, PersistentSortedMap<LocalDate, List<Task>>> current = store;
+        Map<String, Map<LocalDate, List<Task>>> changes = new HashMap<>();
+        for (Map.Entry<String, Long> u : userVersions.entrySet()) {
+            if (u.getValue() <= sinceVersion) continue;
+            String username = u.getKey();
             Map<LocalDate, List<Task>> perDay = new HashMap<>();
-            for (Map.Entry<LocalDate, List<Task>> d : e.getValue().entrySet()) {
-                perDay.put(d.getKey(), new ArrayList<>(d.getValue()));
+            for (Map.Entry<LocalDate, Long> d : dayVersions.getOrDefault(username, Collections.emptyMap()).entrySet()) {
+                if (d.getValue() > sinceVersion) {
+                    perDay.put(d.getKey(), dayOf(current, username, d.getKey()));
+                }
             }
-            snap.put(e.getKey(), perDay);
+            changes.put(username, perDay);
         }
-        return snap;
+        return changes;
+    }
+
+    // Caller holds writeLock. The partition is stamped before the new version
+    // is published, so whoever reads version v also sees every stamp <= v and
+    // a backup that records v can never miss a partition at or below it.
+    private void markChanged(String username, LocalDate date) {
+        long v = version.get() + 1;
+        dayVersions.computeIfAbsent(username, k -> new ConcurrentHashMap<>()).put(date, v);
+        userVersions.put(username, v);
+        version.set(v);
     }
 
+    /**
+     * O(1) snapshot: a read-only view of the current version. Later writes
+     * build new versions and never show up in it.
+     */
+    public Map<String, Map<LocalDate, List<Task>>> snapshot() {
+        return new SnapshotView(store);
+    }
+
+    /**
+     * Replace the whole schedule. A view from snapshot() is swapped back in
+     * directly; any other map is converted into a new version first.
+     */
     public void restore(Map<String, Map<LocalDate, List<Task>>> snap) {
-        store.clear();
-        allTasksList.clear(); // Clear array storage
-        
-        if (snap == null) return;
-        
-        for (Map.Entry<String, Map<LocalDate, List<Task>>> e : snap.entrySet()) {
-            Map<LocalDate, List<Task>> perDay = new HashMap<>();
-            for (Map.Entry<LocalDate, List<Task>> d : e.getValue().entrySet()) {
-                perDay.put(d.getKey(), new ArrayList<>(d.getValue()));
-                allTasksList.addAll(d.getValue()); // Restore to array storage
+        PersistentSortedMap<String, PersistentSortedMap<LocalDate, List<Task>>> restored;
+        if (snap instanceof SnapshotView) {
+            restored = ((SnapshotView) snap).root;
+        } else {
+            restored = PersistentSortedMap.empty();
+            if (snap != null) {
+                for (Map.Entry<String, Map<LocalDate, List<Task>>> e : snap.entrySet()) {
+                    PersistentSortedMap<LocalDate, List<Task>> perDay = PersistentSortedMap.empty();
+                    for (Map.Entry<LocalDate, List<Task>> d : e.getValue().entrySet()) {
+                        perDay = perDay.put(d.getKey(), sorted(d.getValue()));
+                    }
+                    restored = restored.put(e.getKey(), perDay);
+                }
+            }
+        }
+
+        synchronized (writeLock) {
+            store = restored;
+            userVersions.clear();
+            dayVersions.clear();
+
+            taskIndex.clear();
+            for (Map.Entry<String, PersistentSortedMap<LocalDate, List<Task>>> e : restored) {
+                for (Map.Entry<LocalDate, List<Task>> d : e.getValue()) {
+                    for (Task t : d.getValue()) index(e.getKey(), t);
+                }
+            }
+            restoreVersion = version.incrementAndGet();
+        }
+    }
+
+    private void index(String username, Task task) {
+        taskIndex.computeIfAbsent(username, k -> new ConcurrentHashMap<>())
+                .put(task.id, new TaskLocation(username, task.date, task));
+    }
+
+    // Day the user's task is on if writing it would move it to another day, else null
+    private LocalDate movedFrom(String username, Task task) {
+        TaskLocation old = findTask(username, task.id);
+        return old == null || old.date.equals(task.date) ? null : old.date;
+    }
+
+    private static List<Task> withoutTask(List<Task> day, String taskId) {
+        List<Task> kept = new ArrayList<>(day.size());
+        for (Task t : day) {
+            if (!t.id.equals(taskId)) kept.add(t);
+        }
+        return Collections.unmodifiableList(kept);
+    }
+
+    /**
+     * New day list without any existing task with the same ID and with the
+     * task inserted after everything that sorts at or before it.
+     */
+    private static List<Task> withTask(List<Task> day, Task task) {
+        Task[] updated = new Task[day.size() + 1];
+        int n = 0;
+        boolean placed = false;
+        for (Task t : day) {
+            if (t.id.equals(task.id)) continue;
+            if (!placed && ORDER.compare(task, t) < 0) {
+                updated[n++] = task;
+                placed = true;
             }
-            store.put(e.getKey(), perDay);
+            updated[n++] = t;
+        }
+        if (!placed) updated[n++] = task;
+        return Collections.unmodifiableList(Arrays.asList(n == updated.length ? updated : Arrays.copyOf(updated, n)));
+    }
+
+    private static List<Task> sorted(Collection<Task> tasks) {
+        Task[] array = tasks.toArray(new Task[0]);
+        Arrays.sort(array, ORDER); // stable
+        return Collections.unmodifiableList(Arrays.asList(array));
+    }
+
+    private static List<Task> dayOf(PersistentSortedMap<String, PersistentSortedMap<LocalDate, List<Task>>> root,
+                                    String username, LocalDate date) {
+        PersistentSortedMap<LocalDate, List<Task>> cal = root.get(username);
+        if (cal == null) return Collections.emptyList();
+        return cal.getOrDefault(date, Collections.emptyList());
+    }
+
+    /** Read-only Map view over one immutable version of the store */
+    private static class SnapshotView extends AbstractMap<String, Map<LocalDate, List<Task>>> {
+        final PersistentSortedMap<String, PersistentSortedMap<LocalDate, List<Task>>> root;
+
+        SnapshotView(PersistentSortedMap<String, PersistentSortedMap<LocalDate, List<Task>>> root) {
+            this.root = root;
+        }
+
+        @Override
+        public Map<LocalDate, List<Task>> get(Object username) {
+            if (!(username instanceof String)) return null;
+            PersistentSortedMap<LocalDate, List<Task>> cal = root.get((String) username);
+            return cal == null ? null : cal.asMap();
+        }
+
+        @Override
+        public boolean containsKey(Object username) {
+            return get(username) != null;
+        }
+
+        @Override
+        public int size() {
+            return root.size();
+        }
+
+        @Override
+        public Set<Entry<String, Map<LocalDate, List<Task>>>> entrySet() {
+            return new AbstractSet<Entry<String, Map<LocalDate, List<Task>>>>() {
+                @Override
+                public Iterator<Entry<String, Map<LocalDate, List<Task>>>> iterator() {
+                    Iterator<Map.Entry<String, PersistentSortedMap<LocalDate, List<Task>>>> it = root.iterator();
+                    return new Iterator<Entry<String, Map<LocalDate, List<Task>>>>() {
+                        public boolean hasNext() { return it.hasNext(); }
+                        public Entry<String, Map<LocalDate, List<Task>>> next() {
+                            Map.Entry<String, PersistentSortedMap<LocalDate, List<Task>>> e = it.next();
+                            return new SimpleImmutableEntry<>(e.getKey(), e.getValue().asMap());
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return root.size();
+                }
+            };
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,261 @@
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+
+/**
+ * ScheduleServiceTest — JUnit 4 tests for schedule storage, snapshots
+ * and backups beyond the Sprint 1 UAT cases.
+ */
+public class ScheduleServiceTest {
+
+    private static final String USER = "resident.valid@mars.local";
+    private static final LocalDate TODAY = LocalDate.of(2040, 3, 1);
+
+    private ScheduleService schedule;
+
+    @Before
+    public void setUp() {
+        schedule = new ScheduleService();
+        schedule.upsertTask(USER, new Task("a1", "Inspect hydroponics", 2, TODAY, LocalTime.of(9, 0)));
+        schedule.upsertTask(USER, new Task("a2", "Check airlock seals", 1, TODAY, LocalTime.of(9, 0)));
+        schedule.upsertTask(USER, new Task("a3", "Soil sample catalog", 3, TODAY.plusDays(1), LocalTime.of(11, 30)));
+        schedule.upsertTask("tech@mars.local", new Task("b1", "Inspect hydroponics", 1, TODAY, LocalTime.of(7, 15)));
+    }
+
+    @Test
+    public void binarySnapshotRoundTripsInMemory() {
+        BackupService backup = new BackupService();
+        backup.backup(schedule.snapshot());
+
+        ScheduleService restored = new ScheduleService();
+        restored.restore(backup.restore());
+
+        assertSameSchedule(schedule, restored);
+    }
+
+    @Test
+    public void binarySnapshotRoundTripsThroughMappedFile() throws Exception {
+        Path file = Files.createTempFile("schedule", ".snap");
+        try {
+            BackupService backup = new BackupService();
+            backup.backupToFile(schedule.snapshot(), file);
+
+            Map<String, Map<LocalDate, List<Task>>> view = backup.restoreFromFile(file);
+            assertEquals(2, view.size());
+            assertEquals(2, view.get(USER).size());
+
+            ScheduleService restored = new ScheduleService();
+            restored.restore(view);
+            assertSameSchedule(schedule, restored);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void incrementalBackupHoldsOnlyChangedPartitions() {
+        BackupService backup = new BackupService();
+        backup.backupFull(schedule);
+        long base = schedule.currentVersion();
+
+        schedule.upsertTask(USER, new Task("a4", "Rover battery check", 3, TODAY.plusDays(1), LocalTime.of(13, 0)));
+        Map<String, Map<LocalDate, List<Task>>> changes = schedule.changesSince(base);
+
+        assertEquals(Collections.singleton(USER), changes.keySet());
+        assertEquals(Collections.singleton(TODAY.plusDays(1)), changes.get(USER).keySet());
+        assertTrue(backup.backupIncremental(schedule));
+        assertEquals(2, backup.getBackupTimes().size());
+    }
+
+    @Test
+    public void pointInTimeRestoreReplaysChainUpToThatPoint() throws Exception {
+        BackupService backup = new BackupService();
+        backup.backupFull(schedule);
+        ScheduleService atBase = copyOf(schedule);
+
+        Thread.sleep(2);
+        schedule.upsertTask(USER, new Task("a5", "Water filter swap", 2, TODAY, LocalTime.of(8, 0)));
+        backup.backupIncremental(schedule);
+        ScheduleService atFirst = copyOf(schedule);
+
+        Thread.sleep(2);
+        schedule.upsertTask("tech@mars.local", new Task("b2", "Recalibrate sensors", 1, TODAY.plusDays(1), LocalTime.of(16, 0)));
+        backup.backupIncremental(schedule);
+
+        List<Instant> times = backup.getBackupTimes();
+        assertEquals(3, times.size());
+        assertSameSchedule(atBase, restoredFrom(backup.restoreAt(times.get(0))));
+        assertSameSchedule(atFirst, restoredFrom(backup.restoreAt(times.get(1))));
+        assertSameSchedule(schedule, restoredFrom(backup.restore()));
+    }
+
+    @Test
+    public void snapshotIsUnaffectedByLaterWrites() {
+        Map<String, Map<LocalDate, List<Task>>> snap = schedule.snapshot();
+        ScheduleService before = copyOf(schedule);
+
+        schedule.upsertTask(USER, new Task("a1", "Inspect hydroponics (moved)", 2, TODAY, LocalTime.of(15, 0)));
+        schedule.upsertTask(USER, new Task("a4", "Flush water lines", 2, TODAY.plusDays(2), LocalTime.of(8, 0)));
+
+        assertEquals(2, snap.get(USER).get(TODAY).size());
+        assertNull(snap.get(USER).get(TODAY.plusDays(2)));
+        assertSameSchedule(before, restoredFrom(snap));
+    }
+
+    @Test
+    public void restoringOwnSnapshotRollsBackAndForcesFullBackup() {
+        Map<String, Map<LocalDate, List<Task>>> snap = schedule.snapshot();
+        BackupService backup = new BackupService();
+        backup.backupFull(schedule);
+
+        schedule.upsertTask(USER, new Task("a4", "Flush water lines", 2, TODAY, LocalTime.of(8, 0)));
+        schedule.restore(snap);
+
+        assertEquals(2, schedule.getTasks(USER, TODAY).size());
+        assertEquals(4, schedule.getAllTasksArray().length);
+        assertFalse(backup.backupIncremental(schedule));
+        assertSameSchedule(schedule, restoredFrom(backup.restore()));
+    }
+
+    @Test
+    public void taskIndexTracksLatestWriteOfEachId() {
+        Task[] before = schedule.getAllTasksArray();
+        assertEquals(4, before.length);
+
+        schedule.upsertTask(USER, new Task("a3", "Soil sample catalog", 1, TODAY.plusDays(1), LocalTime.of(10, 0)));
+        schedule.upsertTask(USER, new Task("a5", "Flush water lines", 2, TODAY, LocalTime.of(8, 0)));
+
+        Task[] after = schedule.getAllTasksArray();
+        assertEquals(5, after.length);
+        assertEquals(4, before.length);
+        ScheduleService.TaskLocation loc = schedule.findTask(USER, "a3");
+        assertEquals(USER, loc.username);
+        assertEquals(TODAY.plusDays(1), loc.date);
+        assertEquals(1, loc.task.priority);
+        assertNull(schedule.findTask(USER, "missing"));
+        assertNull(schedule.findTask("tech@mars.local", "a3"));
+    }
+
+    @Test
+    public void residentsSharingTaskIdsKeepTheirOwnTasks() {
+        ScheduleService seeded = new ScheduleService();
+        seeded.seedResidentTasks("ada@mars.local");
+        seeded.seedResidentTasks("bob@mars.local");
+        assertEquals(8, seeded.getAllTasksArray().length);
+        assertEquals("bob@mars.local", seeded.findTask("bob@mars.local", "t1").username);
+    }
+
+    @Test
+    public void movingATaskTakesItOffItsOldDay() {
+        BackupService backup = new BackupService();
+        backup.backupFull(schedule);
+        schedule.upsertTask(USER, new Task("a1", "Inspect hydroponics", 2, TODAY.plusDays(1), LocalTime.of(9, 0)));
+
+        assertEquals(Collections.singletonList("a2"), ids(schedule.getTasks(USER, TODAY)));
+        assertEquals(Arrays.asList("a1", "a3"), ids(schedule.getTasks(USER, TODAY.plusDays(1))));
+        assertEquals(4, schedule.getAllTasksArray().length);
+        assertEquals(TODAY.plusDays(1), schedule.findTask(USER, "a1").date);
+
+        assertTrue(backup.backupIncremental(schedule));
+        assertSameSchedule(schedule, restoredFrom(backup.restore()));
+    }
+
+    @Test
+    public void dayListsStaySortedByTimeThenPriority() {
+        schedule.upsertTask(USER, new Task("a4", "Flush water lines", 1, TODAY, LocalTime.of(8, 0)));
+        schedule.upsertTask(USER, new Task("a5", "Log rover hours", 2, TODAY, LocalTime.of(9, 0)));
+        schedule.upsertTask(USER, new Task("a2", "Check airlock seals", 1, TODAY, LocalTime.of(17, 0)));
+
+        List<Task> tasks = schedule.getTasks(USER, TODAY);
+        List<String> ids = new ArrayList<>();
+        for (Task t : tasks) ids.add(t.id);
+        assertEquals(Arrays.asList("a4", "a1", "a5", "a2"), ids);
+        assertSame(tasks, schedule.getTasks(USER, TODAY));
+        try {
+            tasks.add(new Task("x", "x", 1, TODAY, LocalTime.NOON));
+            fail("day lists are read-only");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    public void rangeQueriesWalkDaysInOrder() {
+        schedule.upsertTask(USER, new Task("a4", "Flush water lines", 2, TODAY.plusDays(7), LocalTime.of(8, 0)));
+        schedule.upsertTask(USER, new Task("a0", "Suit check", 2, TODAY.minusDays(1), LocalTime.of(8, 0)));
+
+        assertEquals(Arrays.asList("a2", "a1", "a3"), ids(schedule.getTasks(USER, TODAY, TODAY.plusDays(6))));
+        assertEquals(Arrays.asList("a0", "a2", "a1", "a3", "a4"),
+                ids(schedule.getTasks(USER, TODAY.minusDays(30), TODAY.plusDays(30))));
+        assertEquals(0, schedule.getTasks(USER, TODAY.plusDays(2), TODAY.plusDays(6)).count());
+        assertEquals(0, schedule.getTasks("nobody@mars.local", TODAY, TODAY.plusDays(6)).count());
+
+        List<String> window = new ArrayList<>();
+        schedule.getTasksInWindow(TODAY, TODAY).forEach(loc -> window.add(loc.username + ":" + loc.task.id));
+        assertEquals(Arrays.asList(USER + ":a2", USER + ":a1", "tech@mars.local:b1"), window);
+    }
+
+    private static List<String> ids(java.util.stream.Stream<Task> tasks) {
+        List<String> ids = new ArrayList<>();
+        tasks.forEach(t -> ids.add(t.id));
+        return ids;
+    }
+
+    @Test
+    public void incrementalChainKeepsWritesMadeDuringBackups() throws Exception {
+        BackupService backup = new BackupService();
+        backup.backupFull(schedule);
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 4_000; i++) {
+                schedule.upsertTask("crew" + (i % 20) + "@mars.local",
+                        new Task("w" + i, "Patrol", 2, TODAY.plusDays(i % 30), LocalTime.of(6, 0)));
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) backup.backupIncremental(schedule);
+        writer.join();
+        backup.backupIncremental(schedule);
+
+        ScheduleService restored = restoredFrom(backup.restore());
+        for (int u = 0; u < 20; u++) {
+            for (int d = 0; d < 30; d++) {
+                String user = "crew" + u + "@mars.local";
+                assertEquals(user + " day " + d, schedule.getTasks(user, TODAY.plusDays(d)).size(),
+                        restored.getTasks(user, TODAY.plusDays(d)).size());
+            }
+        }
+    }
+
+    private static ScheduleService copyOf(ScheduleService source) {
+        return restoredFrom(source.snapshot());
+    }
+
+    private static ScheduleService restoredFrom(Map<String, Map<LocalDate, List<Task>>> snap) {
+        ScheduleService copy = new ScheduleService();
+        copy.restore(snap);
+        return copy;
+    }
+
+    private static List<String> ids(List<Task> tasks) {
+        List<String> ids = new ArrayList<>();
+        for (Task t : tasks) ids.add(t.id);
+        return ids;
+    }
+
+    private static void assertSameSchedule(ScheduleService expected, ScheduleService actual) {
+        for (String user : Arrays.asList(USER, "tech@mars.local")) {
+            for (LocalDate day : Arrays.asList(TODAY, TODAY.plusDays(1))) {
+                List<Task> a = expected.getTasks(user, day);
+                List<Task> b = actual.getTasks(user, day);
+                assertEquals(user + " " + day, a.size(), b.size());
+                for (int i = 0; i < a.size(); i++) {
+                    assertEquals(a.get(i).toString(), b.get(i).toString());
+                    assertEquals(a.get(i).id, b.get(i).id);
+                }
+            }
+        }
+    }
+}
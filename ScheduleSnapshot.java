@@ -0,0 +1,236 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * Compact binary image of schedule data (user -> day -> tasks).
+ *
+ * Layout (big-endian ints):
+ *   header:  MAGIC, VERSION, stringCount, userCount
+ *   strings: stringCount x (byteLength, UTF-8 bytes)   -- usernames, task ids, titles
+ *   users:   userCount x (usernameRef, dayCount,
+ *                         dayCount x (epochDay, taskCount,
+ *                                     taskCount x (idRef, titleRef, priority, epochDay, secondOfDay)))
+ *
+ * Every distinct string is stored once and referenced by index (-1 = null).
+ * Task times are kept to the second. A snapshot can sit in a heap buffer
+ * or a memory-mapped file; reading is lazy, so tasks are only turned back
+ * into Task objects when a day's list is actually read.
+ */
+public class ScheduleSnapshot {
+    private static final int MAGIC = 0x4D53534E; // "MSSN"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int TASK_BYTES = 20;
+
+    private final ByteBuffer data;
+    private final int[] stringOffsets;
+    private final String[] stringCache;
+    private final Map<String, Integer> userOffsets = new LinkedHashMap<>();
+
+    private ScheduleSnapshot(ByteBuffer data) {
+        this.data = data;
+        if (data.getInt(0) != MAGIC) throw new IllegalArgumentException("not a schedule snapshot");
+        if (data.getInt(4) != VERSION) throw new IllegalArgumentException("unsupported snapshot version " + data.getInt(4));
+
+        int stringCount = data.getInt(8);
+        int userCount = data.getInt(12);
+        stringOffsets = new int[stringCount];
+        stringCache = new String[stringCount];
+        int pos = HEADER_BYTES;
+        for (int i = 0; i < stringCount; i++) {
+            stringOffsets[i] = pos;
+            pos += 4 + data.getInt(pos);
+        }
+
+        // Index user records; day headers are walked but tasks are skipped
+        for (int u = 0; u < userCount; u++) {
+            userOffsets.put(string(data.getInt(pos)), pos);
+            int dayCount = data.getInt(pos + 4);
+            pos += 8;
+            for (int d = 0; d < dayCount; d++) {
+                pos += 8 + data.getInt(pos + 4) * TASK_BYTES;
+            }
+        }
+    }
+
+    // ===== Writing =====
+
+    /** Encode schedule data into a heap buffer sized exactly for it */
+    public static ByteBuffer encode(Map<String, Map<LocalDate, List<Task>>> source) {
+        Map<String, Integer> refs = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        int size = HEADER_BYTES;
+        for (Map.Entry<String, Map<LocalDate, List<Task>>> u : source.entrySet()) {
+            size += intern(u.getKey(), refs, strings) + 8;
+            for (List<Task> tasks : u.getValue().values()) {
+                size += 8 + tasks.size() * TASK_BYTES;
+                for (Task t : tasks) {
+                    size += intern(t.id, refs, strings);
+                    size += intern(t.title, refs, strings);
+                }
+            }
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC).putInt(VERSION).putInt(strings.size()).putInt(source.size());
+        for (byte[] s : strings) {
+            out.putInt(s.length).put(s);
+        }
+        for (Map.Entry<String, Map<LocalDate, List<Task>>> u : source.entrySet()) {
+            out.putInt(ref(u.getKey(), refs)).putInt(u.getValue().size());
+            for (Map.Entry<LocalDate, List<Task>> d : u.getValue().entrySet()) {
+                out.putInt((int) d.getKey().toEpochDay()).putInt(d.getValue().size());
+                for (Task t : d.getValue()) {
+                    out.putInt(ref(t.id, refs))
+                       .putInt(ref(t.title, refs))
+                       .putInt(t.priority)
+                       .putInt(t.date == null ? Integer.MIN_VALUE : (int) t.date.toEpochDay())
+                       .putInt(t.time == null ? -1 : t.time.toSecondOfDay());
+                }
+            }
+        }
+        out.flip();
+        return out;
+    }
+
+    /** Write a snapshot file in one sequential pass and fsync it */
+    public static void write(Map<String, Map<LocalDate, List<Task>>> source, Path file) throws IOException {
+        ByteBuffer bytes = encode(source);
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (bytes.hasRemaining()) out.write(bytes);
+            out.force(true);
+        }
+    }
+
+    // ===== Reading =====
+
+    /** Read a snapshot held in memory */
+    public static ScheduleSnapshot of(ByteBuffer bytes) {
+        return new ScheduleSnapshot(bytes.duplicate());
+    }
+
+    /** Memory-map a snapshot file read-only; pages are loaded as they are touched */
+    public static ScheduleSnapshot map(Path file) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new ScheduleSnapshot(in.map(FileChannel.MapMode.READ_ONLY, 0, in.size()));
+        }
+    }
+
+    public Set<String> users() {
+        return Collections.unmodifiableSet(userOffsets.keySet());
+    }
+
+    /**
+     * Read-only view in the shape ScheduleService.snapshot() returns.
+     * Per-user day maps are indexed on first access and task lists are
+     * decoded element by element.
+     */
+    public Map<String, Map<LocalDate, List<Task>>> asMap() {
+        return new AbstractMap<String, Map<LocalDate, List<Task>>>() {
+            @Override
+            public Map<LocalDate, List<Task>> get(Object user) {
+                Integer offset = userOffsets.get(user);
+                return offset == null ? null : days(offset);
+            }
+
+            @Override
+            public boolean containsKey(Object user) {
+                return userOffsets.containsKey(user);
+            }
+
+            @Override
+            public Set<Entry<String, Map<LocalDate, List<Task>>>> entrySet() {
+                return new AbstractSet<Entry<String, Map<LocalDate, List<Task>>>>() {
+                    @Override
+                    public Iterator<Entry<String, Map<LocalDate, List<Task>>>> iterator() {
+                        Iterator<Map.Entry<String, Integer>> it = userOffsets.entrySet().iterator();
+                        return new Iterator<Entry<String, Map<LocalDate, List<Task>>>>() {
+                            public boolean hasNext() { return it.hasNext(); }
+                            public Entry<String, Map<LocalDate, List<Task>>> next() {
+                                Map.Entry<String, Integer> e = it.next();
+                                return new SimpleImmutableEntry<>(e.getKey(), days(e.getValue()));
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() { return userOffsets.size(); }
+                };
+            }
+        };
+    }
+
+    private Map<LocalDate, List<Task>> days(int userOffset) {
+        int dayCount = data.getInt(userOffset + 4);
+        Map<LocalDate, List<Task>> days = new LinkedHashMap<>();
+        int pos = userOffset + 8;
+        for (int d = 0; d < dayCount; d++) {
+            LocalDate date = LocalDate.ofEpochDay(data.getInt(pos));
+            int taskCount = data.getInt(pos + 4);
+            days.put(date, new TaskList(pos + 8, taskCount));
+            pos += 8 + taskCount * TASK_BYTES;
+        }
+        return Collections.unmodifiableMap(days);
+    }
+
+    /** Tasks of one day, decoded from the buffer on access */
+    private class TaskList extends AbstractList<Task> implements RandomAccess {
+        private final int offset;
+        private final int size;
+
+        TaskList(int offset, int size) {
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @Override
+        public Task get(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException("index " + index);
+            int p = offset + index * TASK_BYTES;
+            int epochDay = data.getInt(p + 12);
+            int second = data.getInt(p + 16);
+            return new Task(string(data.getInt(p)), string(data.getInt(p + 4)), data.getInt(p + 8),
+                    epochDay == Integer.MIN_VALUE ? null : LocalDate.ofEpochDay(epochDay),
+                    second < 0 ? null : LocalTime.ofSecondOfDay(second));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private String string(int ref) {
+        if (ref < 0) return null;
+        String s = stringCache[ref];
+        if (s == null) {
+            int p = stringOffsets[ref];
+            byte[] bytes = new byte[data.getInt(p)];
+            for (int i = 0; i < bytes.length; i++) bytes[i] = data.get(p + 4 + i);
+            s = new String(bytes, StandardCharsets.UTF_8);
+            stringCache[ref] = s;
+        }
+        return s;
+    }
+
+    /** Register a string in the table; returns the bytes it adds (0 if already present) */
+    private static int intern(String s, Map<String, Integer> refs, List<byte[]> strings) {
+        if (s == null || refs.containsKey(s)) return 0;
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        refs.put(s, strings.size());
+        strings.add(bytes);
+        return 4 + bytes.length;
+    }
+
+    private static int ref(String s, Map<String, Integer> refs) {
+        return s == null ? -1 : refs.get(s);
+    }
+}
@@ -0,0 +1,197 @@
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live login sessions keyed by opaque random tokens, expired when idle.
+ * User.loggedIn is kept true while the user has at least one session.
+ */
+public class SessionRegistry {
+    private static final int SLOTS = 128;        // power of two
+    private static final int TICKS_PER_TIMEOUT = 64;
+    private static final int TOKEN_BYTES = 16;
+
+    private final long timeoutMillis;
+    private final long tickMillis;
+    private final Clock clock;
+    private final SecureRandom random = new SecureRandom();
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final Map<User, Set<Session>> byUser = new ConcurrentHashMap<>();
+
+    // Timer wheel, guarded by itself
+    private final List<List<Session>> wheel = new ArrayList<>(SLOTS);
+    private volatile long currentTick;
+
+    private static final class Session {
+        final String token;
+        final User user;
+        volatile long lastActiveMillis;
+        volatile boolean closed;
+        long scheduledTick; // guarded by the wheel
+
+        Session(String token, User user, long now) {
+            this.token = token;
+            this.user = user;
+            this.lastActiveMillis = now;
+        }
+    }
+
+    public SessionRegistry(Duration idleTimeout) {
+        this(idleTimeout, Clock.systemUTC());
+    }
+
+    public SessionRegistry(Duration idleTimeout, Clock clock) {
+        if (idleTimeout == null || idleTimeout.isZero() || idleTimeout.isNegative())
+            throw new IllegalArgumentException("idleTimeout must be positive");
+        this.timeoutMillis = idleTimeout.toMillis();
+        this.tickMillis = Math.max(1, timeoutMillis / TICKS_PER_TIMEOUT);
+        this.clock = clock;
+        for (int i = 0; i < SLOTS; i++) wheel.add(new ArrayList<>());
+        this.currentTick = clock.millis() / tickMillis;
+    }
+
+    /** Start a session for the user and return its token */
+    public String open(User user) {
+        long now = clock.millis();
+        Session s = new Session(newToken(), user, now);
+        sessions.put(s.token, s);
+        byUser.compute(user, (u, set) -> {
+            if (set == null) set = ConcurrentHashMap.newKeySet();
+            set.add(s);
+            u.loggedIn = true;
+            return set;
+        });
+        synchronized (wheel) {
+            schedule(s, deadlineTick(s));
+        }
+        advance(now);
+        return s.token;
+    }
+
+    /** The session's user if the token is live; counts as activity */
+    public Optional<User> validate(String token) {
+        if (token == null) return Optional.empty();
+        long now = clock.millis();
+        advance(now);
+        Session s = sessions.get(token);
+        if (s == null || s.closed) return Optional.empty();
+        if (now - s.lastActiveMillis > timeoutMillis) { // due, but the wheel has not got there yet
+            end(s);
+            return Optional.empty();
+        }
+        s.lastActiveMillis = now;
+        return Optional.of(s.user);
+    }
+
+    /** End one session; false if it was not live */
+    public boolean close(String token) {
+        Session s = token == null ? null : sessions.get(token);
+        return s != null && end(s);
+    }
+
+    /** End every session of the user; returns how many were live */
+    public int closeAll(User user) {
+        Set<Session> set = byUser.get(user);
+        if (set == null) return 0;
+        int closed = 0;
+        for (Session s : set.toArray(new Session[0])) {
+            if (end(s)) closed++;
+        }
+        return closed;
+    }
+
+    /** Record activity on every session of the user */
+    public void touchAll(User user) {
+        Set<Session> set = byUser.get(user);
+        if (set == null) return;
+        long now = clock.millis();
+        for (Session s : set) s.lastActiveMillis = now;
+    }
+
+    /** Number of live sessions */
+    public int activeCount() {
+        advance(clock.millis());
+        return sessions.size();
+    }
+
+    /** Users with at least one live session */
+    public List<User> activeUsers() {
+        advance(clock.millis());
+        return new ArrayList<>(byUser.keySet());
+    }
+
+    /** Run the timer wheel up to now; called by every operation anyway */
+    public void expireIdle() {
+        advance(clock.millis());
+    }
+
+    // ===== Timer wheel =====
+    // Each session sits in the slot of the tick it is due on, and advancing
+    // only visits the slots that have come due. Touching a session just
+    // records the time; when its slot comes round it is expired or moved to
+    // its new deadline, so expiry is amortised O(1) per session.
+
+    private void advance(long now) {
+        long target = now / tickMillis;
+        if (target <= currentTick) return;
+        List<Session> expired = new ArrayList<>();
+        synchronized (wheel) {
+            long from = currentTick;
+            if (target <= from) return;
+            // After a long pause every slot is due; visit each once
+            long last = Math.min(target, from + SLOTS);
+            for (long tick = from + 1; tick <= last; tick++) {
+                List<Session> slot = wheel.get((int) (tick & (SLOTS - 1)));
+                if (slot.isEmpty()) continue;
+                List<Session> due = new ArrayList<>(slot);
+                slot.clear();
+                for (Session s : due) {
+                    if (s.closed) continue;
+                    if (s.scheduledTick > target) {
+                        slot.add(s); // a later lap round the wheel
+                        continue;
+                    }
+                    long deadline = deadlineTick(s);
+                    if (deadline <= target) {
+                        expired.add(s);
+                    } else {
+                        schedule(s, deadline); // touched since it was scheduled
+                    }
+                }
+            }
+            currentTick = target;
+        }
+        for (Session s : expired) end(s);
+    }
+
+    /** First tick on which the session has been idle past the timeout */
+    private long deadlineTick(Session s) {
+        return (s.lastActiveMillis + timeoutMillis) / tickMillis + 1;
+    }
+
+    private void schedule(Session s, long tick) {
+        s.scheduledTick = tick;
+        wheel.get((int) (tick & (SLOTS - 1))).add(s);
+    }
+
+    private boolean end(Session s) {
+        if (!sessions.remove(s.token, s)) return false;
+        s.closed = true;
+        byUser.computeIfPresent(s.user, (u, set) -> {
+            set.remove(s);
+            if (!set.isEmpty()) return set;
+            u.loggedIn = false;
+            return null;
+        });
+        return true;
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
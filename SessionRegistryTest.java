@@ -0,0 +1,78 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.time.*;
+
+/**
+ * SessionRegistryTest — JUnit 4 tests for session tokens and idle expiry.
+ * Uses a hand-wound clock so the timer wheel can be stepped directly.
+ */
+public class SessionRegistryTest {
+
+    /** Clock that only moves when the test says so. */
+    private static class TestClock extends Clock {
+        private Instant now;
+        TestClock(Instant start) { this.now = start; }
+        void advance(Duration d) { now = now.plus(d); }
+        @Override public ZoneId getZone() { return ZoneOffset.UTC; }
+        @Override public Clock withZone(ZoneId zone) { return this; }
+        @Override public Instant instant() { return now; }
+    }
+
+    private final TestClock clock = new TestClock(Instant.parse("2040-03-01T08:00:00Z"));
+    private final SessionRegistry sessions = new SessionRegistry(Duration.ofMinutes(15), clock);
+
+    private static User user(String name) {
+        return new User("U" + name.length(), name, "pw", AccountStatus.ACTIVE, Role.COLONY_RESIDENT);
+    }
+
+    @Test
+    public void tokensAreOpaqueAndResolveToTheirUser() {
+        User ana = user("ana@mars.local");
+        String a = sessions.open(ana);
+        String b = sessions.open(ana);
+
+        assertNotEquals(a, b);
+        assertFalse(a.contains("ana"));
+        assertSame(ana, sessions.validate(a).get());
+        assertTrue(ana.loggedIn);
+        assertFalse(sessions.validate("forged").isPresent());
+    }
+
+    @Test
+    public void idleSessionsExpireOnTheWheel() {
+        User ana = user("ana@mars.local");
+        User ben = user("ben@mars.local");
+        String a = sessions.open(ana);
+        String b = sessions.open(ben);
+        assertEquals(2, sessions.activeCount());
+
+        clock.advance(Duration.ofMinutes(10));
+        assertTrue(sessions.validate(b).isPresent()); // ben stays active
+
+        clock.advance(Duration.ofMinutes(6));
+        assertEquals(1, sessions.activeCount());
+        assertFalse(sessions.validate(a).isPresent());
+        assertFalse(ana.loggedIn);
+        assertEquals(1, sessions.activeUsers().size());
+        assertSame(ben, sessions.activeUsers().get(0));
+
+        clock.advance(Duration.ofHours(5)); // long pause: every slot is due at once
+        assertEquals(0, sessions.activeCount());
+        assertFalse(ben.loggedIn);
+    }
+
+    @Test
+    public void closingTheLastSessionLogsTheUserOut() {
+        User ana = user("ana@mars.local");
+        String a = sessions.open(ana);
+        String b = sessions.open(ana);
+
+        assertTrue(sessions.close(a));
+        assertFalse(sessions.close(a));
+        assertTrue(ana.loggedIn);
+        assertEquals(1, sessions.closeAll(ana));
+        assertFalse(ana.loggedIn);
+        assertFalse(sessions.validate(b).isPresent());
+    }
+}
@@ -0,0 +1,60 @@
+import java.util.*;
+
+/**
+ * SupplyBenchmark — rough throughput comparison for bulk supply ordering.
+ * Compares one submitBatch call against the equivalent N submitRequest
+ * calls. Run from BlueJ (void main) or the command line; numbers are
+ * indicative only, so compare runs on the same machine.
+ */
+public class SupplyBenchmark {
+
+    private static final int ORDERS = 200_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        System.out.println("=== Supply ordering benchmark (" + ORDERS + " orders x 3 items) ===");
+        for (int round = 1; round <= ROUNDS; round++) {
+            long singles = timeSingles();
+            long batch = timeBatch();
+            System.out.printf("round %d :: singles %,d orders/s :: batch %,d orders/s :: speedup %.2fx%n",
+                    round, perSecond(singles), perSecond(batch), (double) singles / batch);
+        }
+    }
+
+    private static long timeSingles() {
+        SupplyService supply = freshService();
+        long start = System.nanoTime();
+        for (int i = 0; i < ORDERS; i++) {
+            String user = "bench." + i + "@mars.local";
+            supply.submitRequest(user, SupplyItem.WATER, 2);
+            supply.submitRequest(user, SupplyItem.OXYGEN, 1);
+            supply.submitRequest(user, SupplyItem.FOOD_A, 1);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long timeBatch() {
+        SupplyService supply = freshService();
+        Map<SupplyItem, Integer> order = new EnumMap<>(SupplyItem.class);
+        order.put(SupplyItem.WATER, 2);
+        order.put(SupplyItem.OXYGEN, 1);
+        order.put(SupplyItem.FOOD_A, 1);
+        long start = System.nanoTime();
+        for (int i = 0; i < ORDERS; i++) {
+            supply.submitBatch("bench." + i + "@mars.local", order);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static SupplyService freshService() {
+        SupplyService supply = new SupplyService();
+        supply.restock(SupplyItem.WATER, ORDERS * 2);
+        supply.restock(SupplyItem.OXYGEN, ORDERS);
+        supply.restock(SupplyItem.FOOD_A, ORDERS);
+        return supply;
+    }
+
+    private static long perSecond(long nanos) {
+        return ORDERS * 1_000_000_000L / Math.max(1, nanos);
+    }
+}
@@ -0,0 +1,306 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Append-only write-ahead journal for supply events, one flat JSON object
+ * per line (JSONL). Appends go to an in-memory buffer and sync() writes it
+ * through a FileChannel and fsyncs it; callers that sync at the same time
+ * share one fsync (group commit). SupplyService syncs every change before
+ * reporting it as done.
+ *
+ * After a failed write or compaction the journal takes no more events:
+ * append, flush and close throw, and getFailure() tells why.
+ *
+ * Once enough events have accumulated a background flusher runs the
+ * compaction hook, which is expected to call rewrite() with a compact
+ * snapshot of the state.
+ */
+public class SupplyJournal implements AutoCloseable {
+    private final Path path;
+    private final int compactAfterEvents;
+    private final Object writeLock = new Object();
+    private final ScheduledExecutorService flusher;
+
+    private FileChannel channel;
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+    private long eventsSinceCompaction;
+    private long appended; // sequence number of the last buffered event (guarded by this)
+    private long durable;  // ...and of the last one on disk (guarded by writeLock)
+    private volatile IOException failure;
+    private volatile Runnable compactionHook;
+
+    /**
+     * @param path journal file (created if missing)
+     * @param flushIntervalMillis how often the flusher writes whatever nobody synced and checks for compaction
+     * @param compactAfterEvents events appended since the last compaction before the hook runs
+     */
+    public SupplyJournal(Path path, long flushIntervalMillis, int compactAfterEvents) throws IOException {
+        if (flushIntervalMillis <= 0) throw new IllegalArgumentException("flushIntervalMillis must be > 0");
+        if (compactAfterEvents <= 0) throw new IllegalArgumentException("compactAfterEvents must be > 0");
+        this.path = path;
+        this.compactAfterEvents = compactAfterEvents;
+        this.channel = openForAppend(path);
+        this.eventsSinceCompaction = countLines(path);
+        terminateTornLine();
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "supply-journal-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::backgroundFlush,
+                flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void setCompactionHook(Runnable hook) {
+        this.compactionHook = hook;
+    }
+
+    /**
+     * Buffer one event
+     * @return its sequence number, to pass to sync()
+     */
+    public long append(Map<String, String> event) {
+        checkWritable();
+        byte[] line = (encode(event) + "\n").getBytes(StandardCharsets.UTF_8);
+        synchronized (this) {
+            buffer.write(line, 0, line.length);
+            eventsSinceCompaction++;
+            return ++appended;
+        }
+    }
+
+    /**
+     * Return once the event with this sequence number is on disk. The first
+     * caller in flushes everything buffered, so the callers queued behind
+     * it usually find their event already written.
+     */
+    public void sync(long seq) {
+        synchronized (writeLock) {
+            if (durable < seq) flush();
+        }
+    }
+
+    /** Write everything buffered so far and fsync it */
+    public void flush() {
+        synchronized (writeLock) {
+            checkWritable();
+            ByteArrayOutputStream pending;
+            long upTo;
+            synchronized (this) {
+                if (buffer.size() == 0) return;
+                pending = buffer;
+                upTo = appended;
+                buffer = new ByteArrayOutputStream(Math.max(4096, pending.size()));
+            }
+            try {
+                ByteBuffer bytes = ByteBuffer.wrap(pending.toByteArray());
+                while (bytes.hasRemaining()) channel.write(bytes);
+                channel.force(false);
+            } catch (IOException e) {
+                failure = e;
+                throw new UncheckedIOException("supply journal write failed: " + path, e);
+            }
+            durable = upTo;
+        }
+    }
+
+    /** Throws if an earlier write failed; the journal takes no events after that */
+    public void checkWritable() {
+        IOException f = failure;
+        if (f != null) throw new UncheckedIOException("supply journal stopped after a failed write: " + path, f);
+    }
+
+    /** Why the journal stopped taking events, or null while it is healthy */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Replace the journal with a compact set of events describing the
+     * current state. The caller must stop new appends while this runs.
+     */
+    public void rewrite(List<Map<String, String>> snapshot) {
+        synchronized (writeLock) {
+            flush();
+            Path tmp = path.resolveSibling(path.getFileName() + ".compact");
+            try {
+                try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    StringBuilder sb = new StringBuilder();
+                    for (Map<String, String> event : snapshot) {
+                        sb.append(encode(event)).append('\n');
+                    }
+                    ByteBuffer bytes = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+                    while (bytes.hasRemaining()) out.write(bytes);
+                    out.force(true);
+                }
+                channel.close();
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                channel = openForAppend(path);
+            } catch (IOException e) {
+                failure = e;
+                throw new UncheckedIOException("supply journal compaction failed: " + path, e);
+            }
+            synchronized (this) {
+                eventsSinceCompaction = 0;
+            }
+        }
+    }
+
+    /**
+     * Feed every complete event in the journal to the consumer, oldest first.
+     * A torn final line (crash mid-write) is skipped.
+     */
+    public void replay(Consumer<Map<String, String>> consumer) {
+        flush();
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                Map<String, String> event = decode(line);
+                if (event != null) consumer.accept(event);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("supply journal replay failed: " + path, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flush();
+        } finally {
+            synchronized (writeLock) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("supply journal close failed: " + path, e);
+                }
+            }
+        }
+    }
+
+    private void backgroundFlush() {
+        try {
+            flush();
+            boolean compact;
+            synchronized (this) {
+                compact = eventsSinceCompaction >= compactAfterEvents;
+            }
+            Runnable hook = compactionHook;
+            if (compact && hook != null) hook.run();
+        } catch (RuntimeException e) {
+            if (failure == null) failure = new IOException("supply journal compaction failed: " + path, e);
+            flusher.shutdown();
+        }
+    }
+
+    /** A crash mid-write can leave a partial last line; start new events on a fresh line */
+    private void terminateTornLine() throws IOException {
+        long size = channel.size();
+        if (size == 0) return;
+        ByteBuffer last = ByteBuffer.allocate(1);
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            in.read(last, size - 1);
+        }
+        if (last.get(0) != '\n') {
+            channel.write(ByteBuffer.wrap(new byte[] { '\n' }));
+            channel.force(false);
+        }
+    }
+
+    private static FileChannel openForAppend(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static long countLines(Path path) throws IOException {
+        try (Stream<String> lines = Files.lines(path, StandardCharsets.UTF_8)) {
+            return lines.count();
+        }
+    }
+
+    // ===== Flat JSON encoding (string values only, no nesting) =====
+
+    static String encode(Map<String, String> event) {
+        StringBuilder sb = new StringBuilder("{");
+        boolean first = true;
+        for (Map.Entry<String, String> e : event.entrySet()) {
+            if (!first) sb.append(',');
+            first = false;
+            quote(sb, e.getKey());
+            sb.append(':');
+            quote(sb, e.getValue());
+        }
+        return sb.append('}').toString();
+    }
+
+    /** Parse a line written by encode; returns null if it is malformed */
+    static Map<String, String> decode(String line) {
+        Map<String, String> event = new LinkedHashMap<>();
+        int[] pos = { 0 };
+        try {
+            expect(line, pos, '{');
+            if (peek(line, pos) == '}') return event;
+            while (true) {
+                String key = readString(line, pos);
+                expect(line, pos, ':');
+                event.put(key, readString(line, pos));
+                char c = line.charAt(pos[0]++);
+                if (c == '}') return event;
+                if (c != ',') return null;
+            }
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static void quote(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c == '\n') sb.append("\\n");
+            else if (c == '\r') sb.append("\\r");
+            else sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    private static String readString(String line, int[] pos) {
+        expect(line, pos, '"');
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            char c = line.charAt(pos[0]++);
+            if (c == '"') return sb.toString();
+            if (c == '\\') {
+                char esc = line.charAt(pos[0]++);
+                sb.append(esc == 'n' ? '\n' : esc == 'r' ? '\r' : esc);
+            } else {
+                sb.append(c);
+            }
+        }
+    }
+
+    private static char peek(String line, int[] pos) {
+        return line.charAt(pos[0]);
+    }
+
+    private static void expect(String line, int[] pos, char c) {
+        if (line.charAt(pos[0]++) != c) throw new IllegalArgumentException("expected " + c);
+    }
+}
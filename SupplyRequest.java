@@ -8,21 +8,30 @@ public class SupplyRequest {
     public final Instant timestamp;
     public RequestStatus status;
     public String estimatedDelivery;
+    /** Colony day the quota was charged to, on the quota ledger's clock */
+    public final long quotaDay;
 
     public SupplyRequest(String requestId, String username, SupplyItem item, 
-                        int quantity, RequestStatus status) {
+                        int quantity, RequestStatus status, long quotaDay) {
+        this(requestId, username, item, quantity, status, Instant.now(), quotaDay);
+    }
+
+    /** Rebuild a request with its original submission time (e.g. from a journal) */
+    public SupplyRequest(String requestId, String username, SupplyItem item,
+                        int quantity, RequestStatus status, Instant timestamp, long quotaDay) {
         this.requestId = requestId;
         this.username = username;
         this.item = item;
         this.quantity = quantity;
-        this.timestamp = Instant.now();
+        this.timestamp = timestamp;
         this.status = status;
+        this.quotaDay = quotaDay;
         this.estimatedDelivery = calculateDelivery();
     }
 
     private String calculateDelivery() {
         // Simple delivery estimation logic
-        return Instant.now().plusSeconds(3600).toString(); // 1 hour later
+        return timestamp.plusSeconds(3600).toString(); // 1 hour later
     }
 
     @Override
@@ -0,0 +1,25 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a resident's supply request history (newest first).
+ * Pass nextCursor back to SupplyService.getRequestHistory for the next page.
+ */
+public class SupplyRequestPage {
+    /** nextCursor value when there are no older requests */
+    public static final int NO_MORE = -1;
+
+    public static final SupplyRequestPage EMPTY = new SupplyRequestPage(Collections.emptyList(), NO_MORE);
+
+    public final List<SupplyRequest> requests;
+    public final int nextCursor;
+
+    public SupplyRequestPage(List<SupplyRequest> requests, int nextCursor) {
+        this.requests = Collections.unmodifiableList(requests);
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != NO_MORE;
+    }
+}
@@ -1,40 +1,61 @@
+import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Manages supply requests, inventory, and user quotas for Colony Residents
  * Handles UAT-S2-01 through UAT-S2-05
  */
 public class SupplyService {
-    private final Map<String, List<SupplyRequest>> userRequests = new ConcurrentHashMap<>();
-    private final Map<SupplyItem, Integer> inventory = new ConcurrentHashMap<>();
-    private final Map<String, Map<SupplyItem, Integer>> userQuotas = new ConcurrentHashMap<>();
-    private int nextRequestId = 1000;
+    /** Cursor for the first (newest) page of getRequestHistory */
+    public static final int HISTORY_START = Integer.MAX_VALUE;
+
+    private static final SupplyItem[] ITEMS = SupplyItem.values();
+
+    private final Map<String, UserRequestLog> userRequests = new ConcurrentHashMap<>();
+    private final Map<String, SupplyRequest> requestsById = new ConcurrentHashMap<>();
+    private final InventoryLedger inventory = new InventoryLedger();
+    private final QuotaLedger quotas;
+    private final AtomicInteger nextRequestId = new AtomicInteger(1000);
+
+    // Optional write-ahead journal; mutations hold the read side, compaction the write side
+    private final SupplyJournal journal;
+    private final ReadWriteLock journalLock = new ReentrantReadWriteLock();
 
     public SupplyService() {
+        this(new QuotaLedger());
+    }
+
+    public SupplyService(QuotaLedger quotas) {
+        this(quotas, null);
+    }
+
+    /**
+     * Journaled service: state is rebuilt from the journal, and every
+     * submit, cancel, status change and restock is on disk in it before
+     * the call returns. If the journal cannot be written the call throws
+     * UncheckedIOException and every later change is refused.
+     */
+    public SupplyService(QuotaLedger quotas, SupplyJournal journal) {
+        this.quotas = quotas;
+        this.journal = journal;
         initializeInventory();
-        initializeQuotas();
+        if (journal != null) {
+            journal.replay(this::applyEvent);
+            journal.setCompactionHook(this::compactJournal);
+        }
     }
 
     private void initializeInventory() {
-        inventory.put(SupplyItem.WATER, 1000);
-        inventory.put(SupplyItem.OXYGEN, 500);
-        inventory.put(SupplyItem.FOOD_A, 200);
-        inventory.put(SupplyItem.FOOD_B, 150);
-        inventory.put(SupplyItem.MEDICAL, 50);
-    }
-
-    private void initializeQuotas() {
-        // Default daily quotas for all users
-        Map<SupplyItem, Integer> defaultQuotas = new HashMap<>();
-        defaultQuotas.put(SupplyItem.WATER, 10);
-        defaultQuotas.put(SupplyItem.OXYGEN, 5);
-        defaultQuotas.put(SupplyItem.FOOD_A, 3);
-        defaultQuotas.put(SupplyItem.FOOD_B, 3);
-        defaultQuotas.put(SupplyItem.MEDICAL, 1);
-        
-        // In a real system, we'd load user-specific quotas
+        inventory.setAvailable(SupplyItem.WATER, 1000);
+        inventory.setAvailable(SupplyItem.OXYGEN, 500);
+        inventory.setAvailable(SupplyItem.FOOD_A, 200);
+        inventory.setAvailable(SupplyItem.FOOD_B, 150);
+        inventory.setAvailable(SupplyItem.MEDICAL, 50);
     }
 
     /**
@@ -44,78 +65,420 @@ public class SupplyService {
      * UAT-S2-03: Out-of-stock handling
      */
     public Optional<SupplyRequest> submitRequest(String username, SupplyItem item, int quantity) {
-        // Check inventory
-        if (!isInStock(item, quantity)) {
+        Optional<SupplyRequest> result;
+        long seq;
+        Lock lock = lockForWrite();
+        try {
+            result = doSubmitRequest(username, item, quantity);
+            seq = result.isPresent() ? journalSubmit(result.get()) : 0;
+        } finally {
+            unlock(lock);
+        }
+        sync(seq);
+        return result;
+    }
+
+    private Optional<SupplyRequest> doSubmitRequest(String username, SupplyItem item, int quantity) {
+        // Reserve stock up front; the check and the decrement are one atomic step
+        if (!inventory.reserve(item, quantity)) {
             return Optional.empty(); // UAT-S2-03
         }
 
-        // Check quota
-        if (!isWithinQuota(username, item, quantity)) {
+        // Check and consume today's quota
+        long quotaDay = quotas.consume(username, item, quantity);
+        if (quotaDay == QuotaLedger.REJECTED) {
+            inventory.release(item, quantity);
             return Optional.empty(); // UAT-S2-02
         }
 
         // Create and store request
-        String requestId = "REQ-" + (nextRequestId++);
-        SupplyRequest request = new SupplyRequest(requestId, username, item, quantity, RequestStatus.SUBMITTED);
-        
-        userRequests.computeIfAbsent(username, k -> new ArrayList<>()).add(request);
-        
-        // Update inventory
-        inventory.put(item, inventory.get(item) - quantity);
+        String requestId = "REQ-" + nextRequestId.getAndIncrement();
+        SupplyRequest request = userRequests.computeIfAbsent(username, k -> new UserRequestLog())
+                .append(requestId, username, item, quantity, quotaDay);
+        requestsById.put(requestId, request);
         
         return Optional.of(request); // UAT-S2-01
     }
 
+    /**
+     * Submits several items as one order. Every line is reserved and
+     * charged against quota together, or the whole batch is rejected.
+     * @return the created requests (one per line), or empty if rejected
+     */
+    public Optional<List<SupplyRequest>> submitBatch(String username, Map<SupplyItem, Integer> items) {
+        Optional<List<SupplyRequest>> result;
+        long seq = 0;
+        Lock lock = lockForWrite();
+        try {
+            result = doSubmitBatch(username, items);
+            if (result.isPresent()) {
+                for (SupplyRequest request : result.get()) seq = journalSubmit(request);
+            }
+        } finally {
+            unlock(lock);
+        }
+        sync(seq);
+        return result;
+    }
+
+    private Optional<List<SupplyRequest>> doSubmitBatch(String username, Map<SupplyItem, Integer> items) {
+        if (items == null || items.isEmpty()) {
+            return Optional.empty();
+        }
+        int[] quantities = new int[ITEMS.length];
+        for (Map.Entry<SupplyItem, Integer> line : items.entrySet()) {
+            Integer qty = line.getValue();
+            if (line.getKey() == null || qty == null || qty <= 0) {
+                return Optional.empty();
+            }
+            quantities[line.getKey().ordinal()] += qty;
+        }
+
+        if (!inventory.reserveAll(quantities)) {
+            return Optional.empty(); // UAT-S2-03
+        }
+        long quotaDay = quotas.consumeAll(username, quantities);
+        if (quotaDay == QuotaLedger.REJECTED) {
+            inventory.releaseAll(quantities);
+            return Optional.empty(); // UAT-S2-02
+        }
+
+        // One id block and one log append for the whole batch
+        int lines = 0;
+        for (int q : quantities) if (q > 0) lines++;
+        int firstId = nextRequestId.getAndAdd(lines);
+        List<SupplyRequest> created = userRequests.computeIfAbsent(username, k -> new UserRequestLog())
+                .appendAll(firstId, username, quantities, lines, quotaDay);
+        for (SupplyRequest request : created) {
+            requestsById.put(request.requestId, request);
+        }
+        return Optional.of(created);
+    }
+
+    /** Add delivered stock back into inventory */
+    public void restock(SupplyItem item, int quantity) {
+        long seq;
+        Lock lock = lockForWrite();
+        try {
+            inventory.restock(item, quantity);
+            seq = journalEvent("op", "restock", "item", item.name(), "qty", String.valueOf(quantity));
+        } finally {
+            unlock(lock);
+        }
+        sync(seq);
+    }
+
+    /** Full history for a user, newest first */
     public List<SupplyRequest> getRequestHistory(String username) {
-        return userRequests.getOrDefault(username, new ArrayList<>())
-                .stream()
-                .sorted((a, b) -> b.timestamp.compareTo(a.timestamp))
-                .collect(Collectors.toList());
+        UserRequestLog log = userRequests.get(username);
+        if (log == null) return Collections.emptyList();
+        return log.page(HISTORY_START, Integer.MAX_VALUE).requests;
+    }
+
+    /**
+     * One page of a user's history, newest first.
+     * Pass HISTORY_START as the cursor for the first page, then the returned
+     * nextCursor for each following page. Cursors are positions in the user's
+     * append-only log, so new submissions never shift an open page.
+     */
+    public SupplyRequestPage getRequestHistory(String username, int cursor, int limit) {
+        if (limit <= 0) throw new IllegalArgumentException("limit must be > 0");
+        UserRequestLog log = userRequests.get(username);
+        if (log == null) return SupplyRequestPage.EMPTY;
+        return log.page(cursor, limit);
     }
 
     public boolean cancelRequest(String username, String requestId) {
-        List<SupplyRequest> requests = userRequests.get(username);
-        if (requests != null) {
-            for (SupplyRequest request : requests) {
-                if (request.requestId.equals(requestId) && request.status == RequestStatus.SUBMITTED) {
-                    request.status = RequestStatus.CANCELLED;
-                    // Restore inventory
-                    inventory.put(request.item, inventory.get(request.item) + request.quantity);
-                    return true; // UAT-S2-05
-                }
-            }
+        SupplyRequest request = requestsById.get(requestId);
+        if (request == null || !request.username.equals(username)) {
+            return false;
+        }
+        long seq;
+        Lock lock = lockForWrite();
+        try {
+            if (!applyCancel(request)) return false;
+            seq = journalEvent("op", "cancel", "id", requestId);
+        } finally {
+            unlock(lock);
         }
-        return false;
+        sync(seq);
+        return true; // UAT-S2-05
     }
 
-    private boolean isInStock(SupplyItem item, int quantity) {
-        return inventory.getOrDefault(item, 0) >= quantity;
+    /**
+     * Operator status change. SUBMITTED requests can be APPROVED; SUBMITTED
+     * or APPROVED requests can be DELIVERED (stock leaves the store) or
+     * DECLINED (stock and quota are given back).
+     */
+    public boolean updateStatus(String requestId, RequestStatus newStatus) {
+        SupplyRequest request = requestsById.get(requestId);
+        if (request == null || newStatus == null) {
+            return false;
+        }
+        long seq;
+        Lock lock = lockForWrite();
+        try {
+            if (!applyStatus(request, newStatus)) return false;
+            seq = journalEvent("op", "status", "id", requestId, "status", newStatus.name());
+        } finally {
+            unlock(lock);
+        }
+        sync(seq);
+        return true;
     }
 
-    private boolean isWithinQuota(String username, SupplyItem item, int quantity) {
-        Map<SupplyItem, Integer> userQuota = userQuotas.computeIfAbsent(username, k -> new HashMap<>());
-        int usedToday = getUsedToday(username, item);
-        int quota = userQuota.getOrDefault(item, 10); // Default quota
-        
-        return (usedToday + quantity) <= quota;
+    private boolean applyCancel(SupplyRequest request) {
+        synchronized (request) {
+            if (request.status != RequestStatus.SUBMITTED) return false;
+            request.status = RequestStatus.CANCELLED;
+        }
+        // Restore inventory and quota
+        inventory.release(request.item, request.quantity);
+        quotas.refund(request.username, request.item, request.quantity, request.quotaDay);
+        return true;
     }
 
-    private int getUsedToday(String username, SupplyItem item) {
-        return userRequests.getOrDefault(username, new ArrayList<>())
-                .stream()
-                .filter(req -> req.item == item && req.status != RequestStatus.CANCELLED)
-                .mapToInt(req -> req.quantity)
-                .sum();
+    private boolean applyStatus(SupplyRequest request, RequestStatus newStatus) {
+        synchronized (request) {
+            RequestStatus current = request.status;
+            boolean active = current == RequestStatus.SUBMITTED || current == RequestStatus.APPROVED;
+            switch (newStatus) {
+                case APPROVED:
+                    if (current != RequestStatus.SUBMITTED) return false;
+                    break;
+                case DELIVERED:
+                case DECLINED:
+                    if (!active) return false;
+                    break;
+                default:
+                    return false; // cancellation goes through cancelRequest
+            }
+            request.status = newStatus;
+        }
+        if (newStatus == RequestStatus.DELIVERED) {
+            inventory.commit(request.item, request.quantity);
+        } else if (newStatus == RequestStatus.DECLINED) {
+            inventory.release(request.item, request.quantity);
+            quotas.refund(request.username, request.item, request.quantity, request.quotaDay);
+        }
+        return true;
     }
 
     public Map<SupplyItem, Integer> getInventory() {
-        return new HashMap<>(inventory);
+        return inventory.snapshot();
     }
 
     public int getRemainingQuota(String username, SupplyItem item) {
-        Map<SupplyItem, Integer> userQuota = userQuotas.computeIfAbsent(username, k -> new HashMap<>());
-        int quota = userQuota.getOrDefault(item, 10);
-        int usedToday = getUsedToday(username, item);
-        return quota - usedToday;
+        return quotas.getRemaining(username, item);
+    }
+
+    // ===== Journal =====
+
+    /**
+     * Rewrite the journal as a compact snapshot of live state: on-hand
+     * stock per item, today's quota used by delivered requests, one submit
+     * event per open request and the next request id. Cancelled, declined
+     * and delivered requests are left out, so after a restart a user's
+     * history starts with their open requests.
+     * Called by the journal's flusher once enough events have built up.
+     */
+    public void compactJournal() {
+        if (journal == null) return;
+        journalLock.writeLock().lock();
+        try {
+            List<Map<String, String>> snapshot = new ArrayList<>();
+            for (SupplyItem item : ITEMS) {
+                int onHand = inventory.getAvailable(item) + inventory.getReserved(item);
+                snapshot.add(event("op", "inventory", "item", item.name(), "qty", String.valueOf(onHand)));
+            }
+            long today = quotas.today();
+            Map<String, int[]> deliveredToday = new HashMap<>();
+            List<Map<String, String>> open = new ArrayList<>();
+            for (UserRequestLog log : userRequests.values()) {
+                for (SupplyRequest request : log.all()) {
+                    RequestStatus status = request.status;
+                    if (status == RequestStatus.SUBMITTED || status == RequestStatus.APPROVED) {
+                        open.add(submitEvent(request));
+                    } else if (status == RequestStatus.DELIVERED && request.quotaDay == today) {
+                        deliveredToday.computeIfAbsent(request.username, k -> new int[ITEMS.length])
+                                [request.item.ordinal()] += request.quantity;
+                    }
+                }
+            }
+            for (Map.Entry<String, int[]> used : deliveredToday.entrySet()) {
+                for (SupplyItem item : ITEMS) {
+                    int qty = used.getValue()[item.ordinal()];
+                    if (qty == 0) continue;
+                    snapshot.add(event("op", "quota", "user", used.getKey(), "item", item.name(),
+                            "qty", String.valueOf(qty), "day", String.valueOf(today)));
+                }
+            }
+            snapshot.addAll(open);
+            snapshot.add(event("op", "ids", "next", String.valueOf(nextRequestId.get())));
+            journal.rewrite(snapshot);
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+    }
+
+    /** Rebuild state from one journal event (startup replay only) */
+    private void applyEvent(Map<String, String> e) {
+        switch (e.getOrDefault("op", "")) {
+            case "inventory": {
+                SupplyItem item = SupplyItem.valueOf(e.get("item"));
+                inventory.setAvailable(item, Integer.parseInt(e.get("qty")) - inventory.getReserved(item));
+                break;
+            }
+            case "restock":
+                inventory.restock(SupplyItem.valueOf(e.get("item")), Integer.parseInt(e.get("qty")));
+                break;
+            case "submit":
+                replaySubmit(e);
+                break;
+            case "quota":
+                quotas.restore(e.get("user"), SupplyItem.valueOf(e.get("item")),
+                        Integer.parseInt(e.get("qty")), Long.parseLong(e.get("day")));
+                break;
+            case "ids":
+                nextRequestId.accumulateAndGet(Integer.parseInt(e.get("next")), Math::max);
+                break;
+            case "cancel": {
+                SupplyRequest request = requestsById.get(e.get("id"));
+                if (request != null) applyCancel(request);
+                break;
+            }
+            case "status": {
+                SupplyRequest request = requestsById.get(e.get("id"));
+                if (request != null) applyStatus(request, RequestStatus.valueOf(e.get("status")));
+                break;
+            }
+            default:
+                // Unknown event type from a newer version; skip it
+        }
+    }
+
+    private void replaySubmit(Map<String, String> e) {
+        String requestId = e.get("id");
+        if (requestsById.containsKey(requestId)) return;
+
+        SupplyItem item = SupplyItem.valueOf(e.get("item"));
+        int quantity = Integer.parseInt(e.get("qty"));
+        RequestStatus status = RequestStatus.valueOf(e.get("status"));
+        SupplyRequest request = new SupplyRequest(requestId, e.get("user"), item, quantity,
+                status, Instant.parse(e.get("ts")), Long.parseLong(e.get("day")));
+
+        userRequests.computeIfAbsent(request.username, k -> new UserRequestLog()).add(request);
+        requestsById.put(requestId, request);
+
+        if (status == RequestStatus.SUBMITTED || status == RequestStatus.APPROVED) {
+            inventory.reserve(item, quantity);
+        }
+        if (status != RequestStatus.CANCELLED && status != RequestStatus.DECLINED) {
+            quotas.restore(request.username, item, quantity, request.quotaDay);
+        }
+
+        int idNum = Integer.parseInt(requestId.substring("REQ-".length()));
+        nextRequestId.accumulateAndGet(idNum + 1, Math::max);
+    }
+
+    /** Buffer an event; returns the sequence number to sync, or 0 without a journal */
+    private long journalSubmit(SupplyRequest request) {
+        return journal == null ? 0 : journal.append(submitEvent(request));
+    }
+
+    private long journalEvent(String... keyValues) {
+        return journal == null ? 0 : journal.append(event(keyValues));
+    }
+
+    // Outside the lock, so changes made meanwhile share the fsync
+    private void sync(long seq) {
+        if (seq > 0) journal.sync(seq);
+    }
+
+    private static Map<String, String> submitEvent(SupplyRequest request) {
+        return event("op", "submit", "id", request.requestId, "user", request.username,
+                "item", request.item.name(), "qty", String.valueOf(request.quantity),
+                "status", request.status.name(), "ts", request.timestamp.toString(),
+                "day", String.valueOf(request.quotaDay));
+    }
+
+    private static Map<String, String> event(String... keyValues) {
+        Map<String, String> e = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            e.put(keyValues[i], keyValues[i + 1]);
+        }
+        return e;
+    }
+
+    private Lock lockForWrite() {
+        if (journal == null) return null;
+        journal.checkWritable();
+        Lock lock = journalLock.readLock();
+        lock.lock();
+        return lock;
+    }
+
+    private static void unlock(Lock lock) {
+        if (lock != null) lock.unlock();
+    }
+
+    /**
+     * Append-only request log for one user, kept in submission order.
+     * Requests are created under the log's lock so order matches timestamps.
+     */
+    private static class UserRequestLog {
+        private SupplyRequest[] entries = new SupplyRequest[8];
+        private int size;
+
+        synchronized SupplyRequest append(String requestId, String username, SupplyItem item, int quantity,
+                                          long quotaDay) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            SupplyRequest request = new SupplyRequest(requestId, username, item, quantity, RequestStatus.SUBMITTED, quotaDay);
+            entries[size++] = request;
+            return request;
+        }
+
+        /** Re-add a request rebuilt from the journal */
+        synchronized void add(SupplyRequest request) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            entries[size++] = request;
+        }
+
+        synchronized List<SupplyRequest> appendAll(int firstId, String username, int[] quantities, int lines,
+                                                   long quotaDay) {
+            if (size + lines > entries.length) {
+                entries = Arrays.copyOf(entries, Math.max(size * 2, size + lines));
+            }
+            List<SupplyRequest> created = new ArrayList<>(lines);
+            int id = firstId;
+            for (int i = 0; i < quantities.length; i++) {
+                if (quantities[i] <= 0) continue;
+                SupplyRequest request = new SupplyRequest("REQ-" + (id++), username, ITEMS[i],
+                        quantities[i], RequestStatus.SUBMITTED, quotaDay);
+                entries[size++] = request;
+                created.add(request);
+            }
+            return created;
+        }
+
+        /** Every entry, oldest first */
+        synchronized SupplyRequest[] all() {
+            return Arrays.copyOf(entries, size);
+        }
+
+        /** Entries at positions below cursor, newest first */
+        synchronized SupplyRequestPage page(int cursor, int limit) {
+            int end = Math.max(0, Math.min(cursor, size));
+            int start = Math.max(0, end - limit);
+            List<SupplyRequest> out = new ArrayList<>(end - start);
+            for (int i = end - 1; i >= start; i--) {
+                out.add(entries[i]);
+            }
+            return new SupplyRequestPage(out, start > 0 ? start : SupplyRequestPage.NO_MORE);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,240 @@
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * SupplyServiceTest — JUnit 4 tests for SupplyService request indexing,
+ * history paging, bulk ordering and journal recovery.
+ */
+public class SupplyServiceTest {
+
+    private static final String USER = "heavy.user@mars.local";
+
+    private SupplyService supply;
+
+    @Before
+    public void setUp() {
+        supply = new SupplyService();
+    }
+
+    @Test
+    public void historyPagesWalkNewestToOldest() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(supply.submitRequest(USER, SupplyItem.WATER, 1).get().requestId);
+        }
+
+        SupplyRequestPage first = supply.getRequestHistory(USER, SupplyService.HISTORY_START, 2);
+        SupplyRequestPage second = supply.getRequestHistory(USER, first.nextCursor, 2);
+        SupplyRequestPage third = supply.getRequestHistory(USER, second.nextCursor, 2);
+
+        assertEquals(ids.get(4), first.requests.get(0).requestId);
+        assertEquals(ids.get(3), first.requests.get(1).requestId);
+        assertEquals(ids.get(1), second.requests.get(1).requestId);
+        assertEquals(1, third.requests.size());
+        assertEquals(ids.get(0), third.requests.get(0).requestId);
+        assertFalse(third.hasMore());
+    }
+
+    @Test
+    public void openPageIsStableWhenNewRequestsArrive() {
+        for (int i = 0; i < 4; i++) supply.submitRequest(USER, SupplyItem.OXYGEN, 1);
+        SupplyRequestPage first = supply.getRequestHistory(USER, SupplyService.HISTORY_START, 2);
+
+        supply.submitRequest(USER, SupplyItem.FOOD_A, 1);
+        SupplyRequestPage second = supply.getRequestHistory(USER, first.nextCursor, 2);
+
+        assertEquals(2, second.requests.size());
+        for (SupplyRequest r : second.requests) assertEquals(SupplyItem.OXYGEN, r.item);
+    }
+
+    @Test
+    public void unknownUserHasEmptyHistory() {
+        assertTrue(supply.getRequestHistory("nobody@mars.local").isEmpty());
+        assertFalse(supply.getRequestHistory("nobody@mars.local", SupplyService.HISTORY_START, 10).hasMore());
+    }
+
+    @Test
+    public void cannotCancelAnotherUsersRequest() {
+        SupplyRequest req = supply.submitRequest(USER, SupplyItem.WATER, 2).get();
+
+        assertFalse(supply.cancelRequest("someone.else@mars.local", req.requestId));
+        assertTrue(supply.cancelRequest(USER, req.requestId));
+        assertFalse("Already cancelled", supply.cancelRequest(USER, req.requestId));
+    }
+
+    @Test
+    public void batchCreatesOneRequestPerLine() {
+        Map<SupplyItem, Integer> order = new EnumMap<>(SupplyItem.class);
+        order.put(SupplyItem.WATER, 4);
+        order.put(SupplyItem.OXYGEN, 2);
+        order.put(SupplyItem.FOOD_A, 1);
+        int waterBefore = supply.getInventory().get(SupplyItem.WATER);
+
+        List<SupplyRequest> created = supply.submitBatch(USER, order).get();
+
+        assertEquals(3, created.size());
+        assertEquals(waterBefore - 4, (int) supply.getInventory().get(SupplyItem.WATER));
+        assertEquals(6, supply.getRemainingQuota(USER, SupplyItem.WATER));
+        assertEquals(3, supply.getRequestHistory(USER).size());
+        assertTrue(supply.cancelRequest(USER, created.get(1).requestId));
+    }
+
+    @Test
+    public void batchIsRejectedWholeWhenOneLineIsOutOfStock() {
+        Map<SupplyItem, Integer> order = new EnumMap<>(SupplyItem.class);
+        order.put(SupplyItem.WATER, 5);
+        order.put(SupplyItem.MEDICAL, 100);
+        Map<SupplyItem, Integer> before = supply.getInventory();
+
+        assertFalse(supply.submitBatch(USER, order).isPresent());
+
+        assertEquals("No stock may leak from a rejected batch", before, supply.getInventory());
+        assertEquals(10, supply.getRemainingQuota(USER, SupplyItem.WATER));
+        assertTrue(supply.getRequestHistory(USER).isEmpty());
+    }
+
+    @Test
+    public void batchIsRejectedWholeWhenOneLineIsOverQuota() {
+        Map<SupplyItem, Integer> order = new EnumMap<>(SupplyItem.class);
+        order.put(SupplyItem.WATER, 5);
+        order.put(SupplyItem.OXYGEN, 11);
+        Map<SupplyItem, Integer> before = supply.getInventory();
+
+        assertFalse(supply.submitBatch(USER, order).isPresent());
+
+        assertEquals(before, supply.getInventory());
+        assertEquals(10, supply.getRemainingQuota(USER, SupplyItem.WATER));
+    }
+
+    @Test
+    public void journalReplayRebuildsRequestsAndInventory() throws Exception {
+        Path file = Files.createTempFile("supply-journal", ".jsonl");
+        try {
+            SupplyJournal journal = new SupplyJournal(file, 1000, 10_000);
+            SupplyService before = new SupplyService(new QuotaLedger(), journal);
+            SupplyRequest kept = before.submitRequest(USER, SupplyItem.WATER, 4).get();
+            SupplyRequest cancelled = before.submitRequest(USER, SupplyItem.OXYGEN, 2).get();
+            SupplyRequest delivered = before.submitRequest(USER, SupplyItem.FOOD_B, 3).get();
+            before.cancelRequest(USER, cancelled.requestId);
+            before.updateStatus(delivered.requestId, RequestStatus.DELIVERED);
+            before.restock(SupplyItem.MEDICAL, 25);
+            journal.close();
+
+            SupplyJournal reopened = new SupplyJournal(file, 1000, 10_000);
+            SupplyService after = new SupplyService(new QuotaLedger(), reopened);
+
+            assertEquals(before.getInventory(), after.getInventory());
+            assertEquals(3, after.getRequestHistory(USER).size());
+            assertEquals(RequestStatus.CANCELLED, after.getRequestHistory(USER).get(1).status);
+            assertEquals(6, after.getRemainingQuota(USER, SupplyItem.WATER));
+            assertTrue("Replayed request can still be cancelled", after.cancelRequest(USER, kept.requestId));
+            String nextId = after.submitRequest(USER, SupplyItem.WATER, 1).get().requestId;
+            assertFalse("Ids must not be reused after restart", nextId.equals(delivered.requestId));
+            reopened.close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void compactedJournalKeepsOnlyLiveState() throws Exception {
+        Path file = Files.createTempFile("supply-journal", ".jsonl");
+        try {
+            SupplyJournal journal = new SupplyJournal(file, 1000, 10_000);
+            SupplyService before = new SupplyService(new QuotaLedger(), journal);
+            for (int i = 0; i < 20; i++) {
+                SupplyRequest r = before.submitRequest("user" + i + "@mars.local", SupplyItem.WATER, 2).get();
+                if (i % 2 == 0) before.cancelRequest(r.username, r.requestId);
+                if (i % 5 == 1) before.updateStatus(r.requestId, RequestStatus.DELIVERED);
+            }
+            before.compactJournal();
+            before.submitRequest(USER, SupplyItem.MEDICAL, 1);
+            journal.close();
+            int lines = Files.readAllLines(file).size();
+
+            SupplyJournal reopened = new SupplyJournal(file, 1000, 10_000);
+            SupplyService after = new SupplyService(new QuotaLedger(), reopened);
+            Map<SupplyItem, Integer> replayed = after.getInventory();
+            String nextId = after.submitRequest(USER, SupplyItem.WATER, 1).get().requestId;
+            reopened.close();
+
+            assertEquals("5 inventory + 2 delivered quotas + 8 open requests + next id + 1 new submit",
+                    17, lines);
+            assertEquals(before.getInventory(), replayed);
+            assertTrue("Delivered requests are folded away", after.getRequestHistory("user1@mars.local").isEmpty());
+            assertEquals(8, after.getRemainingQuota("user1@mars.local", SupplyItem.WATER));
+            assertEquals(RequestStatus.SUBMITTED, after.getRequestHistory("user3@mars.local").get(0).status);
+            assertEquals(10, after.getRemainingQuota("user0@mars.local", SupplyItem.WATER));
+            assertEquals("REQ-1021", nextId);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void changesAreOnDiskBeforeTheyReturn() throws Exception {
+        Path file = Files.createTempFile("supply-journal", ".jsonl");
+        try {
+            SupplyJournal journal = new SupplyJournal(file, 3_600_000, 10_000); // flusher never ticks
+            SupplyService service = new SupplyService(new QuotaLedger(), journal);
+            SupplyRequest r = service.submitRequest(USER, SupplyItem.WATER, 1).get();
+            service.cancelRequest(USER, r.requestId);
+            assertEquals(2, Files.readAllLines(file).size());
+            journal.close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void failedWriteStopsFurtherChanges() throws Exception {
+        Path file = Files.createTempFile("supply-journal", ".jsonl");
+        try {
+            SupplyJournal journal = new SupplyJournal(file, 3_600_000, 10_000);
+            SupplyService service = new SupplyService(new QuotaLedger(), journal);
+            journal.close(); // later writes hit a closed channel
+            try {
+                service.submitRequest(USER, SupplyItem.WATER, 1);
+                fail("write should fail");
+            } catch (UncheckedIOException expected) {
+            }
+            assertNotNull(journal.getFailure());
+            Map<SupplyItem, Integer> stock = service.getInventory();
+            try {
+                service.restock(SupplyItem.WATER, 5);
+                fail("journal should refuse changes");
+            } catch (UncheckedIOException expected) {
+            }
+            assertEquals(stock, service.getInventory());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void tornLastLineIsIgnored() throws Exception {
+        Path file = Files.createTempFile("supply-journal", ".jsonl");
+        try {
+            SupplyJournal journal = new SupplyJournal(file, 1000, 10_000);
+            new SupplyService(new QuotaLedger(), journal).submitRequest(USER, SupplyItem.WATER, 1);
+            journal.close();
+            Files.write(file, "{\"op\":\"submit\",\"id\":\"REQ-".getBytes(), StandardOpenOption.APPEND);
+
+            SupplyJournal reopened = new SupplyJournal(file, 1000, 10_000);
+            SupplyService after = new SupplyService(new QuotaLedger(), reopened);
+            after.submitRequest(USER, SupplyItem.WATER, 1);
+            reopened.close();
+
+            SupplyJournal third = new SupplyJournal(file, 1000, 10_000);
+            assertEquals(2, new SupplyService(new QuotaLedger(), third).getRequestHistory(USER).size());
+            third.close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
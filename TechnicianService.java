@@ -1,3 +1,4 @@
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.*;
@@ -154,8 +155,8 @@ public class TechnicianService {
         return results;
     }
     
-    private String generateReportId() { return "DIA-" + System.currentTimeMillis(); }
-    private String generateMaintenanceId() { return "MT-" + System.currentTimeMillis(); }
+    private String generateReportId() { return IdGenerator.SHARED.next("DIA"); }
+    private String generateMaintenanceId() { return IdGenerator.SHARED.next("MT"); }
 }
 
 // Enums and supporting classes
@@ -4,13 +4,14 @@ public class User {
     public final String userId;   // NEW: unique ID for every user
     public final String username; // login name (email-like)
     public String password;
-    public AccountStatus status;
+    public volatile AccountStatus status;
     public final Role role;
 
-    // Session & auth tracking (in-memory)
-    public int failedAttempts = 0;
-    public boolean loggedIn = false;
-    public Instant lastActivity = null;
+    // Session & auth tracking (in-memory); AuthService changes these under
+    // a per-user lock, volatile so lock-free readers see current values
+    public volatile int failedAttempts = 0;
+    public volatile boolean loggedIn = false;
+    public volatile Instant lastActivity = null;
 
     public User(String userId, String username, String password, AccountStatus status, Role role) {
         this.userId = userId;
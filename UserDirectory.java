@@ -0,0 +1,595 @@
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Compact, columnar user roster behind UserStore: one fixed-width record
+ * per user over a pool of UTF-8 strings, optionally off the Java heap.
+ */
+public class UserDirectory {
+    // idRef, usernameRef, passwordRef (ints into the string pool),
+    // status ordinal (byte), role ordinal (byte), failedAttempts (short)
+    private static final int RECORD_BYTES = 16;
+    private static final AccountStatus[] STATUSES = AccountStatus.values();
+    private static final Role[] ROLES = Role.values();
+
+    private final boolean offHeap;
+    private ByteBuffer records;
+    private int size;
+    private StringPool strings;
+    private int[] ordinalByUsernameRef = new int[16]; // ordinal + 1, 0 = not a username
+    // A user's object once looked up, handed out from then on so callers can
+    // keep mutating it; it is the source of truth until save()/checkpoint()
+    // copy it back. Session-only fields (loggedIn, lastActivity) live only here.
+    private final Map<Integer, User> live = new ConcurrentHashMap<>();
+    // Writers lock exclusively; lookups are optimistic reads that only fall
+    // back to a read lock if a write overlapped them
+    private final StampedLock lock = new StampedLock();
+
+    public UserDirectory(boolean offHeap) {
+        this.offHeap = offHeap;
+        this.records = allocate(offHeap, 64 * RECORD_BYTES);
+        this.strings = new StringPool(offHeap);
+    }
+
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        int n = size;
+        if (lock.validate(stamp)) return n;
+        stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /** Add or replace (by username) a user's record; returns its ordinal */
+    public int add(User u) {
+        long stamp = lock.writeLock();
+        try {
+            return addUnlocked(u);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Add or replace a user and keep this object as its live copy; returns its ordinal */
+    public int addLive(User u) {
+        long stamp = lock.writeLock();
+        try {
+            int ordinal = addUnlocked(u);
+            live.put(ordinal, u);
+            return ordinal;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Store a user's current state and keep this object as its live copy.
+     * An existing record is updated in place and only strings that changed
+     * are added to the pool, so saving the same user over and over costs
+     * no space.
+     * @return its ordinal
+     */
+    public int save(User u) {
+        long stamp = lock.writeLock();
+        try {
+            int ordinal = ordinalOfUnlocked(u.username);
+            if (ordinal < 0) {
+                ordinal = addUnlocked(u);
+            } else {
+                write(ordinal, u);
+                compactIfMostlyGarbage();
+            }
+            live.put(ordinal, u);
+            return ordinal;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Add or replace many users under one lock. Records, string pool and
+     * index are sized for the whole batch up front, so the index is built
+     * in a single pass with no intermediate rehashing.
+     * @return ordinals, in the order of the list
+     */
+    public int[] addAll(List<User> users) {
+        int[] ordinals = new int[users.size()];
+        long stamp = lock.writeLock();
+        try {
+            long bytes = 0;
+            for (User u : users) {
+                bytes += utf8Length(u.userId) + utf8Length(u.username) + utf8Length(u.password);
+            }
+            ensureRecords(size + users.size());
+            reserve(users.size(), bytes);
+            for (int i = 0; i < ordinals.length; i++) ordinals[i] = addUnlocked(users.get(i));
+            compactIfMostlyGarbage();
+            return ordinals;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Add or replace count users stored in encoded form (see encode),
+     * reading from src's position onward. This is how a roster is loaded
+     * from disk: the UTF-8 bytes go straight into the string pool without
+     * building Strings or User objects.
+     * @param bytes roughly how many bytes the records take, for pre-sizing
+     */
+    public void addAllEncoded(ByteBuffer src, int count, long bytes) {
+        long stamp = lock.writeLock();
+        try {
+            reserve(count, bytes);
+            for (int i = 0; i < count; i++) {
+                int idRef = strings.add(src);
+                int usernameRef = strings.intern(src);
+                int passwordRef = strings.add(src);
+                addRefs(idRef, usernameRef, passwordRef, src.get(), src.get(), src.getShort());
+            }
+            compactIfMostlyGarbage(); // a replayed log may replace the same users many times
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Write a user in the encoded form read by addAllEncoded: userId,
+     * username and password (each an int byte length, -1 for null, then
+     * UTF-8 bytes), status and role ordinals (a byte each), failedAttempts
+     * (a short).
+     * @throws IllegalArgumentException if the password is not an encoded hash
+     */
+    public static void encode(User u, DataOutput out) throws IOException {
+        if (u.password != null && !PasswordHasher.isHash(u.password)) {
+            throw new IllegalArgumentException("refusing to write a plaintext password for " + u.username);
+        }
+        encodeString(u.userId, out);
+        encodeString(u.username, out);
+        encodeString(u.password, out);
+        out.writeByte(u.status.ordinal());
+        out.writeByte(u.role.ordinal());
+        out.writeShort(Math.min(Short.MAX_VALUE, u.failedAttempts));
+    }
+
+    private static void encodeString(String s, DataOutput out) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private int addUnlocked(User u) {
+        int usernameRef = strings.intern(u.username);
+        int ordinal = usernameRef < ordinalByUsernameRef.length ? ordinalByUsernameRef[usernameRef] - 1 : -1;
+        if (ordinal >= 0) { // replacing: reuse what is unchanged rather than appending it again
+            int p = ordinal * RECORD_BYTES;
+            return addRefs(strings.sameOrAdd(records.getInt(p), u.userId), usernameRef,
+                    strings.sameOrAdd(records.getInt(p + 8), u.password),
+                    (byte) u.status.ordinal(), (byte) u.role.ordinal(), (short) Math.min(Short.MAX_VALUE, u.failedAttempts));
+        }
+        return addRefs(strings.add(u.userId), usernameRef, strings.add(u.password),
+                (byte) u.status.ordinal(), (byte) u.role.ordinal(), (short) Math.min(Short.MAX_VALUE, u.failedAttempts));
+    }
+
+    private int addRefs(int idRef, int usernameRef, int passwordRef, byte status, byte role, short failedAttempts) {
+        if (usernameRef >= ordinalByUsernameRef.length) {
+            ordinalByUsernameRef = Arrays.copyOf(ordinalByUsernameRef,
+                    Math.max(usernameRef + 1, ordinalByUsernameRef.length * 2));
+        }
+        int ordinal = ordinalByUsernameRef[usernameRef] - 1;
+        boolean replacing = ordinal >= 0;
+        if (!replacing) {
+            ordinal = size;
+            ensureRecords(size + 1);
+            size++;
+            ordinalByUsernameRef[usernameRef] = ordinal + 1;
+        }
+        int p = ordinal * RECORD_BYTES;
+        if (replacing) {
+            strings.release(records.getInt(p), idRef);
+            strings.release(records.getInt(p + 8), passwordRef);
+        }
+        records.putInt(p, idRef);
+        records.putInt(p + 4, usernameRef);
+        records.putInt(p + 8, passwordRef);
+        records.put(p + 12, status);
+        records.put(p + 13, role);
+        records.putShort(p + 14, failedAttempts);
+        if (replacing) live.remove(ordinal); // a replaced user is rebuilt from the new record
+        return ordinal;
+    }
+
+    /** Ordinal of the user with exactly this username, or -1 */
+    public int ordinalOf(String username) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                int ordinal = ordinalOfUnlocked(username);
+                if (lock.validate(stamp)) return ordinal;
+            } catch (RuntimeException racedWithWriter) {
+                // Saw a half-finished write; retry under the read lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return ordinalOfUnlocked(username);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private int ordinalOfUnlocked(String username) {
+        int[] index = ordinalByUsernameRef;
+        int ref = strings.find(username);
+        return ref < 0 || ref >= index.length ? -1 : index[ref] - 1;
+    }
+
+    public boolean contains(String username) {
+        return ordinalOf(username) >= 0;
+    }
+
+    /** The user with exactly this username, or null */
+    public User get(String username) {
+        int ordinal = ordinalOf(username);
+        return ordinal < 0 ? null : get(ordinal);
+    }
+
+    /** The user at an ordinal (0 .. size-1) */
+    public User get(int ordinal) {
+        User u = live.get(ordinal);
+        if (u != null) return u;
+        long stamp = lock.readLock(); // building a user is rare; keep it simple
+        try {
+            if (ordinal < 0 || ordinal >= size) throw new IndexOutOfBoundsException("ordinal " + ordinal);
+            // computeIfAbsent so racing lookups still share one object
+            return live.computeIfAbsent(ordinal, this::read);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Current state of the user at an ordinal without making it live: the
+     * live object if there is one, otherwise a throwaway copy of the record
+     */
+    public User peek(int ordinal) {
+        User u = live.get(ordinal);
+        if (u != null) return u;
+        long stamp = lock.readLock();
+        try {
+            if (ordinal < 0 || ordinal >= size) throw new IndexOutOfBoundsException("ordinal " + ordinal);
+            u = live.get(ordinal);
+            return u != null ? u : read(ordinal);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Copy the state of every live user back into its record and drop unused string bytes */
+    public void checkpoint() {
+        long stamp = lock.writeLock();
+        try {
+            for (Map.Entry<Integer, User> e : live.entrySet()) {
+                write(e.getKey(), e.getValue());
+            }
+            if (strings.garbageBytes > 0) compactStrings();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            size = 0;
+            live.clear();
+            strings.clear();
+            Arrays.fill(ordinalByUsernameRef, 0);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Users currently held as objects */
+    public int liveCount() {
+        return live.size();
+    }
+
+    /** Bytes held in records, string pool and index */
+    public long bytesUsed() {
+        long stamp = lock.readLock();
+        try {
+            return (long) size * RECORD_BYTES + strings.bytesUsed() + 4L * ordinalByUsernameRef.length;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void ensureRecords(int users) {
+        if ((long) users * RECORD_BYTES > records.capacity()) {
+            long wanted = Math.max((long) users * RECORD_BYTES, 2L * records.capacity());
+            records = grow(records, offHeap, (int) Math.min(Integer.MAX_VALUE - 8, wanted));
+        }
+    }
+
+    /** Room for this many more users and string bytes without growing mid-batch */
+    private void reserve(int users, long bytes) {
+        ensureRecords(size + users);
+        strings.reserve(users * 3, users, bytes);
+        if (strings.count + users * 3 > ordinalByUsernameRef.length) {
+            ordinalByUsernameRef = Arrays.copyOf(ordinalByUsernameRef,
+                    grown(ordinalByUsernameRef.length, strings.count + users * 3));
+        }
+    }
+
+    /** New length for an array that must hold needed: exactly that for a first big batch, else doubled */
+    private static int grown(int length, int needed) {
+        return (int) Math.min(Integer.MAX_VALUE - 8, Math.max(needed, 2L * length));
+    }
+
+    private static int utf8Length(String s) {
+        return s == null ? 0 : s.length() * 2; // upper bound is fine for reserving
+    }
+
+    private void write(int ordinal, User u) {
+        int p = ordinal * RECORD_BYTES;
+        int idRef = records.getInt(p);
+        int passwordRef = records.getInt(p + 8);
+        records.putInt(p, strings.release(idRef, strings.sameOrAdd(idRef, u.userId)));
+        records.putInt(p + 8, strings.release(passwordRef, strings.sameOrAdd(passwordRef, u.password)));
+        records.put(p + 12, (byte) u.status.ordinal());
+        records.put(p + 13, (byte) u.role.ordinal());
+        records.putShort(p + 14, (short) Math.min(Short.MAX_VALUE, u.failedAttempts));
+    }
+
+    /** Replaced strings leave their bytes behind; rebuild once they are over half the pool */
+    private void compactIfMostlyGarbage() {
+        if (strings.garbageBytes > 64 * 1024 && strings.garbageBytes * 2 > strings.arenaUsed) compactStrings();
+    }
+
+    /**
+     * Rebuild the string pool with only the strings the records still use.
+     * Ordinals stay put; only the refs in the records change.
+     */
+    private void compactStrings() {
+        StringPool old = strings;
+        StringPool fresh = new StringPool(offHeap);
+        fresh.reserve(size * 3, size, old.arenaUsed - old.garbageBytes);
+        int[] index = new int[Math.max(16, size * 3)];
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            int p = ordinal * RECORD_BYTES;
+            int usernameRef = fresh.copy(old, records.getInt(p + 4), true);
+            records.putInt(p, fresh.copy(old, records.getInt(p), false));
+            records.putInt(p + 4, usernameRef);
+            records.putInt(p + 8, fresh.copy(old, records.getInt(p + 8), false));
+            if (usernameRef >= index.length) index = Arrays.copyOf(index, grown(index.length, usernameRef + 1));
+            index[usernameRef] = ordinal + 1;
+        }
+        strings = fresh;
+        ordinalByUsernameRef = index;
+    }
+
+    private User read(int ordinal) {
+        int p = ordinal * RECORD_BYTES;
+        User u = new User(strings.get(records.getInt(p)), strings.get(records.getInt(p + 4)),
+                strings.get(records.getInt(p + 8)), STATUSES[records.get(p + 12)], ROLES[records.get(p + 13)]);
+        u.failedAttempts = records.getShort(p + 14);
+        return u;
+    }
+
+    private static ByteBuffer allocate(boolean offHeap, int capacity) {
+        return offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private static ByteBuffer grow(ByteBuffer old, boolean offHeap, int capacity) {
+        ByteBuffer bigger = allocate(offHeap, capacity);
+        ByteBuffer src = old.duplicate();
+        src.clear();
+        bigger.put(src);
+        bigger.clear();
+        return bigger;
+    }
+
+    /**
+     * Strings stored as UTF-8 bytes in one arena. Refs are dense ints; -1
+     * stands for null. Strings that are looked up by value (usernames) are
+     * interned: hashed into an open-addressing table of refs, with each
+     * hash kept next to the string's offset so probing past other strings
+     * and rehashing never touch the arena. Strings only ever read back by
+     * ref (ids, passwords) are just appended and stay out of the table.
+     */
+    private static final class StringPool {
+        private final boolean offHeap;
+        private ByteBuffer arena;
+        private int arenaUsed;
+        private int[] offsets = new int[17]; // offsets[i]..offsets[i+1] are string i's bytes
+        private int[] hashes = new int[16];  // interned strings only
+        private int count;
+        private int interned;
+        private long garbageBytes; // bytes of strings no record uses any more
+        private int[] table = new int[32];   // ref + 1, 0 = empty
+        private byte[] scratch = new byte[256]; // for reads from a ByteBuffer; writers only
+
+        StringPool(boolean offHeap) {
+            this.offHeap = offHeap;
+            this.arena = allocate(offHeap, 1024);
+        }
+
+        /** Ref of this string, pooling it if it is new */
+        int intern(String s) {
+            if (s == null) return -1;
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            return intern(bytes, bytes.length);
+        }
+
+        /** intern for an encoded string (int length, -1 for null, then UTF-8) read from src */
+        int intern(ByteBuffer src) {
+            int len = readEncoded(src);
+            return len < 0 ? -1 : intern(scratch, len);
+        }
+
+        /** Store a string that will not be looked up by value; returns its new ref */
+        int add(String s) {
+            if (s == null) return -1;
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            return append(bytes, bytes.length, 0);
+        }
+
+        /** add for an encoded string read from src */
+        int add(ByteBuffer src) {
+            int len = readEncoded(src);
+            return len < 0 ? -1 : append(scratch, len, 0);
+        }
+
+        /** ref if it already holds s, otherwise a new ref for s */
+        int sameOrAdd(int ref, String s) {
+            if (s == null) return -1;
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            return ref >= 0 && matches(ref, bytes, bytes.length) ? ref : append(bytes, bytes.length, 0);
+        }
+
+        /** Count oldRef's bytes as garbage if newRef replaces it; returns newRef */
+        int release(int oldRef, int newRef) {
+            if (oldRef >= 0 && oldRef != newRef) garbageBytes += offsets[oldRef + 1] - offsets[oldRef];
+            return newRef;
+        }
+
+        /** Copy a string from another pool; returns its ref here */
+        int copy(StringPool from, int ref, boolean intern) {
+            if (ref < 0) return -1;
+            int len = from.offsets[ref + 1] - from.offsets[ref];
+            if (len > scratch.length) scratch = new byte[Math.max(len, scratch.length * 2)];
+            from.arena.get(from.offsets[ref], scratch, 0, len);
+            return intern ? intern(scratch, len) : append(scratch, len, 0);
+        }
+
+        /** Ref of an already interned string, or -1 */
+        int find(String s) {
+            if (s == null) return -1;
+            int[] t = table;
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            return t[probe(t, bytes, bytes.length, hash(bytes, bytes.length))] - 1;
+        }
+
+        String get(int ref) {
+            if (ref < 0) return null;
+            byte[] bytes = new byte[offsets[ref + 1] - offsets[ref]];
+            arena.get(offsets[ref], bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /** Make room for this many more strings (some interned) and bytes without growing again */
+        void reserve(int strings, int toIntern, long bytes) {
+            if (arenaUsed + bytes > arena.capacity()) {
+                arena = grow(arena, offHeap, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(arenaUsed + bytes, 2L * arena.capacity())));
+            }
+            if (count + strings + 1 > offsets.length) offsets = Arrays.copyOf(offsets, grown(offsets.length, count + strings + 1));
+            if (count + strings > hashes.length) hashes = Arrays.copyOf(hashes, grown(hashes.length, count + strings));
+            int wanted = table.length;
+            while ((long) (interned + toIntern) * 2 > wanted) wanted *= 2;
+            if (wanted > table.length) rehash(wanted);
+        }
+
+        void clear() {
+            arenaUsed = 0;
+            count = 0;
+            interned = 0;
+            garbageBytes = 0;
+            Arrays.fill(table, 0);
+        }
+
+        long bytesUsed() {
+            return arenaUsed + 4L * offsets.length + 4L * hashes.length + 4L * table.length;
+        }
+
+        private int intern(byte[] bytes, int len) {
+            int h = hash(bytes, len);
+            int slot = probe(table, bytes, len, h);
+            if (table[slot] != 0) return table[slot] - 1;
+            int ref = append(bytes, len, h);
+            table[slot] = ref + 1;
+            if (++interned * 2 > table.length) rehash(table.length * 2);
+            return ref;
+        }
+
+        private int append(byte[] bytes, int len, int h) {
+            if (arenaUsed + len > arena.capacity()) {
+                arena = grow(arena, offHeap, Math.max(arena.capacity() * 2, arenaUsed + len));
+            }
+            arena.put(arenaUsed, bytes, 0, len);
+            arenaUsed += len;
+            if (count + 2 > offsets.length) offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            if (count + 1 > hashes.length) hashes = Arrays.copyOf(hashes, hashes.length * 2);
+            hashes[count] = h;
+            int ref = count++;
+            offsets[count] = arenaUsed;
+            return ref;
+        }
+
+        /** Read an encoded string's bytes into scratch; returns its length or -1 for null */
+        private int readEncoded(ByteBuffer src) {
+            int len = src.getInt();
+            if (len < 0) return -1;
+            if (len > scratch.length) scratch = new byte[Math.max(len, scratch.length * 2)];
+            src.get(scratch, 0, len);
+            return len;
+        }
+
+        /** Slot holding these bytes, or the empty slot where they would go */
+        private int probe(int[] t, byte[] bytes, int len, int h) {
+            int mask = t.length - 1;
+            int slot = h & mask;
+            while (t[slot] != 0 && (hashes[t[slot] - 1] != h || !matches(t[slot] - 1, bytes, len))) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private boolean matches(int ref, byte[] bytes, int len) {
+            int start = offsets[ref];
+            if (offsets[ref + 1] - start != len) return false;
+            for (int i = 0; i < len; i++) {
+                if (arena.get(start + i) != bytes[i]) return false;
+            }
+            return true;
+        }
+
+        private void rehash(int capacity) {
+            int[] bigger = new int[capacity];
+            int mask = bigger.length - 1;
+            for (int entry : table) {
+                if (entry == 0) continue;
+                int ref = entry - 1;
+                int slot = hashes[ref] & mask;
+                while (bigger[slot] != 0) slot = (slot + 1) & mask;
+                bigger[slot] = ref + 1;
+            }
+            table = bigger;
+        }
+
+        private static int hash(byte[] bytes, int len) {
+            int h = 1;
+            for (int i = 0; i < len; i++) h = 31 * h + bytes[i];
+            h *= 0x9E3779B9; // spread similar strings before linear probing
+            return h ^ (h >>> 16);
+        }
+    }
+}
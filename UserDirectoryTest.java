@@ -0,0 +1,159 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * UserDirectoryTest — JUnit 4 tests for the columnar user roster behind
+ * UserStore, on and off the heap.
+ */
+public class UserDirectoryTest {
+
+    // One iteration: these tests are about storage, not hashing cost
+    private static final PasswordHasher HASHER = new PasswordHasher(1);
+
+    private static void fill(UserStore store, int n) {
+        for (int i = 0; i < n; i++) {
+            store.addNew("Settler." + i + "@mars.local", "pw" + (i % 7),
+                    i % 3 == 0 ? AccountStatus.EXPIRED : AccountStatus.ACTIVE,
+                    i % 2 == 0 ? Role.COLONY_RESIDENT : Role.INFRASTRUCTURE_TECHNICIAN);
+        }
+    }
+
+    @Test
+    public void lookupsSurviveGrowthOnAndOffHeap() {
+        for (boolean offHeap : new boolean[] { false, true }) {
+            UserStore store = new UserStore(offHeap, HASHER);
+            fill(store, 5_000);
+
+            assertEquals(5_000, store.getDirectory().size());
+            assertTrue(store.exists(" SETTLER.4321@mars.local "));
+            assertFalse(store.exists("settler.5000@mars.local"));
+            User u = store.get("settler.4321@mars.local");
+            assertEquals("U6321", u.userId);
+            assertTrue(HASHER.verify("pw2", u.password));
+            assertEquals(AccountStatus.ACTIVE, u.status);
+            assertEquals(Role.INFRASTRUCTURE_TECHNICIAN, u.role);
+            assertSame(u, store.backingMap().get("settler.4321@mars.local"));
+        }
+    }
+
+    @Test
+    public void recordsOnlyBecomeObjectsWhenLookedUp() {
+        UserDirectory dir = new UserDirectory(true);
+        for (int i = 0; i < 100; i++) {
+            dir.add(new User("U" + i, "settler." + i + "@mars.local", "pw", AccountStatus.ACTIVE, Role.COLONY_RESIDENT));
+        }
+        assertEquals(0, dir.liveCount());
+
+        User u = dir.get("settler.7@mars.local");
+        assertEquals("U7", u.userId);
+        assertEquals(1, dir.liveCount());
+        u.status = AccountStatus.LOCKED;
+        u.failedAttempts = 5;
+        assertSame(u, dir.get(7));
+        dir.checkpoint();
+        assertSame(u, dir.get("settler.7@mars.local"));
+        assertEquals(AccountStatus.LOCKED, dir.get(7).status);
+    }
+
+    @Test
+    public void addingAnExistingUsernameReplacesTheUser() {
+        UserStore store = new UserStore(HASHER);
+        store.seedSamples();
+        store.seedSamples();
+        assertEquals(3, store.getDirectory().size());
+        assertEquals(3, store.getUsersArray().length);
+        assertEquals("U1002", store.get("resident.expired@mars.local").userId);
+    }
+
+    @Test
+    public void concurrentRegistrationsGetDistinctIds() throws Exception {
+        UserStore store = new UserStore(HASHER);
+        int threads = 8, each = 500;
+        java.util.Set<String> ids = java.util.concurrent.ConcurrentHashMap.newKeySet();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int base = t * each;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < each; i++) {
+                    ids.add(store.addNew("reg." + (base + i) + "@mars.local", "pw",
+                            AccountStatus.ACTIVE, Role.COLONY_RESIDENT).userId);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread w : workers) w.join();
+
+        assertEquals(threads * each, ids.size());
+        assertEquals(threads * each, store.getDirectory().size());
+        assertTrue(store.exists("reg.3999@mars.local"));
+    }
+
+    @Test
+    public void csvImportAddsRosterInOneBatch() throws Exception {
+        UserStore store = new UserStore(HASHER);
+        String csv = "username,password,status,role\n"
+                + "# night shift\n"
+                + " Ada@mars.local ,pw,a,b,active,colony_resident\n"
+                + "\n"
+                + "bob@mars.local,secret,LOCKED,INFRASTRUCTURE_TECHNICIAN\n";
+        assertEquals(2, store.addAll(new java.io.StringReader(csv)));
+
+        User ada = store.get("ada@mars.local");
+        assertTrue(HASHER.verify("pw,a,b", ada.password));
+        assertEquals(AccountStatus.ACTIVE, ada.status);
+        assertEquals(Role.COLONY_RESIDENT, ada.role);
+        assertNotEquals(ada.userId, store.get("bob@mars.local").userId);
+        assertEquals(AccountStatus.LOCKED, store.get("bob@mars.local").status);
+    }
+
+    @Test
+    public void csvImportRejectsWholeFileOnBadLine() throws Exception {
+        UserStore store = new UserStore(HASHER);
+        try {
+            store.addAll(new java.io.StringReader("ok@mars.local,pw,ACTIVE,COLONY_RESIDENT\nbad@mars.local,pw,ACTIVE,PILOT\n"));
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("line 2:"));
+        }
+        assertFalse(store.exists("ok@mars.local"));
+    }
+
+    @Test
+    public void walkingTheRosterLeavesUsersAsRecords() {
+        UserStore store = new UserStore(HASHER);
+        fill(store, 50);
+        UserStore copy = new UserStore(HASHER);
+        for (User u : store.getUsersArray()) copy.getDirectory().add(u);
+        User live = copy.get("settler.7@mars.local");
+
+        assertEquals(50, copy.getUsersArray().length);
+        assertEquals(50, copy.backingMap().values().size());
+        for (User u : copy.getUserList()) assertNotNull(u.username);
+        assertEquals(1, copy.getDirectory().liveCount());
+        assertSame(live, copy.getUserList().get(7));
+    }
+
+    @Test
+    public void savingAgainAndAgainDoesNotGrowThePool() throws Exception {
+        UserStore store = new UserStore(HASHER);
+        fill(store, 100);
+        User u = store.get("settler.3@mars.local");
+        for (int i = 0; i < 1_000; i++) {
+            u.failedAttempts = i % 5;
+            store.save(u);
+        }
+        long settled = store.getDirectory().bytesUsed();
+        for (int i = 0; i < 20_000; i++) {
+            u.password = "rotated-password-" + i;
+            store.save(u);
+            store.save(new User(u.userId, "settler.4@mars.local", "replaced-" + i, AccountStatus.ACTIVE, Role.COLONY_RESIDENT));
+        }
+        store.checkpoint();
+
+        assertTrue(store.getDirectory().bytesUsed() < settled + 4_096);
+        assertTrue(HASHER.verify("rotated-password-19999", store.getUserList().get(3).password));
+        assertTrue(HASHER.verify("replaced-19999", store.getDirectory().peek(4).password));
+        assertEquals("U2099", store.get("settler.99@mars.local").userId);
+        assertEquals(100, store.search().count(null, null));
+    }
+}
@@ -0,0 +1,384 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntSupplier;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * On-disk form of a UserStore: a compact index file holding every user,
+ * plus an append-only change log of users written since.
+ */
+public class UserJournal implements AutoCloseable {
+    // header (magic, version, generation, next id number, count), one record per user, CRC32
+    public static final String INDEX_FILE = "users.idx";
+    // users.log.G: framed records (length, record, CRC32), one per change
+    public static final String LOG_PREFIX = "users.log.";
+    public static final int COMPACT_AFTER = 1024;
+
+    private static final int MAGIC = 0x4D555352; // "MUSR"
+    private static final int VERSION = 1;
+
+    private final Path dir;
+    private final UserDirectory directory;
+    private final IntSupplier nextUserNum;
+    private final ExecutorService compactor;
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final Object forceLock = new Object(); // taken before this, never after
+
+    // guarded by this
+    private long generation;
+    private FileChannel log;
+    private int logRecords;
+    private long appended; // batches written to the log
+    // guarded by forceLock
+    private long forced;   // ...and how many of those are known to be on disk
+    private volatile IOException failure;           // a failed append; the log takes no more after it
+    private volatile Exception compactionFailure;   // from the last background compaction, until one succeeds
+
+    /** What load() found on disk besides the users themselves */
+    public static final class Loaded {
+        public final int nextUserNum;
+        final long generation;
+
+        Loaded(int nextUserNum, long generation) {
+            this.nextUserNum = nextUserNum;
+            this.generation = generation;
+        }
+    }
+
+    /**
+     * Load the index and then the logs in dir into an empty directory.
+     * A missing dir is created and loads as no users. A record is a user's
+     * full state in UserDirectory's encoded form, so replay is "add or
+     * replace by username" and replaying twice is harmless; the mapped
+     * bytes go straight into the directory. A torn record at the end of a
+     * log (crash mid-append) is dropped and the log truncated.
+     */
+    public static Loaded load(Path dir, UserDirectory into) throws IOException {
+        Files.createDirectories(dir);
+        int nextUserNum = 0;
+        long generation = 0;
+
+        Path index = dir.resolve(INDEX_FILE);
+        if (Files.exists(index)) {
+            try (FileChannel ch = FileChannel.open(index, StandardOpenOption.READ)) {
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                if (buf.limit() < 32) throw new IOException("user index truncated: " + index);
+                CRC32 crc = new CRC32();
+                ByteBuffer body = buf.duplicate();
+                body.limit(buf.limit() - 8);
+                crc.update(body);
+                if (crc.getValue() != buf.getLong(buf.limit() - 8)) throw new IOException("user index corrupt: " + index);
+
+                if (buf.getInt() != MAGIC || buf.getInt() != VERSION) throw new IOException("not a user index: " + index);
+                generation = buf.getLong();
+                nextUserNum = buf.getInt();
+                int count = buf.getInt();
+                into.addAllEncoded(buf, count, buf.remaining());
+            }
+        }
+
+        for (long g : logGenerations(dir)) {
+            if (g >= generation) nextUserNum = replayLog(dir.resolve(LOG_PREFIX + g), into, nextUserNum);
+        }
+        return new Loaded(nextUserNum, generation);
+    }
+
+    /**
+     * Start appending to the log of the loaded generation.
+     * @param directory the store's roster, read when compacting
+     * @param nextUserNum the store's next unused id number
+     */
+    public UserJournal(Path dir, Loaded loaded, UserDirectory directory, IntSupplier nextUserNum) throws IOException {
+        this.dir = dir;
+        this.directory = directory;
+        this.nextUserNum = nextUserNum;
+        this.generation = loaded.generation;
+        this.log = openLog(generation);
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "user-journal-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Append the current state of these users to the change log and return
+     * once it is on disk.
+     * @throws IllegalArgumentException if a password is not an encoded hash
+     */
+    public void append(List<User> users) {
+        if (users.isEmpty()) return;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * users.size());
+        try {
+            DataOutputStream out = new DataOutputStream(bytes);
+            CRC32 crc = new CRC32();
+            ByteArrayOutputStream one = new ByteArrayOutputStream(64);
+            for (User u : users) {
+                one.reset();
+                UserDirectory.encode(u, new DataOutputStream(one));
+                crc.reset();
+                crc.update(one.toByteArray());
+                out.writeInt(one.size());
+                one.writeTo(out);
+                out.writeInt((int) crc.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not encode users for " + dir, e);
+        }
+        long batch;
+        synchronized (this) {
+            checkWritable();
+            try {
+                ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+                while (buf.hasRemaining()) log.write(buf);
+            } catch (IOException e) {
+                // A partial record here would hide every later one from replay
+                failure = e;
+                throw new UncheckedIOException("user log write failed in " + dir, e);
+            }
+            logRecords += users.size();
+            batch = ++appended;
+            if (logRecords >= Math.max(COMPACT_AFTER, directory.size())) compactInBackground(); // log outgrew the roster
+        }
+        force(batch);
+    }
+
+    /**
+     * Group commit: the first thread in forces everything written so far,
+     * so appends that landed while it waited need no fsync of their own.
+     */
+    private void force(long batch) {
+        synchronized (forceLock) {
+            if (forced >= batch) return;
+            FileChannel ch;
+            long upTo;
+            synchronized (this) {
+                ch = log;
+                upTo = appended;
+            }
+            try {
+                ch.force(false);
+            } catch (IOException e) {
+                failure = e;
+                throw new UncheckedIOException("user log sync failed in " + dir, e);
+            }
+            forced = upTo;
+        }
+    }
+
+    /** Throws if an append failed; nothing more is written after that */
+    public void checkWritable() {
+        IOException f = failure;
+        if (f != null) throw new UncheckedIOException("user log stopped after a failed write in " + dir, f);
+    }
+
+    /** The failed append that stopped the log, or null */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Why the last background compaction failed, or null if it succeeded.
+     * The log still holds everything, and the next append past the
+     * threshold tries again.
+     */
+    public Exception getCompactionFailure() {
+        return compactionFailure;
+    }
+
+    /** Write a fresh index now and drop the logs it replaces */
+    public void compact() throws IOException {
+        try {
+            compactor.submit(() -> {
+                doCompact();
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while compacting " + dir);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IllegalStateException("user index compaction failed in " + dir, e.getCause());
+        }
+    }
+
+    /** Force the log to disk; throws if the last background compaction failed */
+    public void flush() throws IOException {
+        synchronized (forceLock) {
+            synchronized (this) {
+                log.force(false);
+                forced = appended;
+            }
+        }
+        reportCompactionFailure();
+    }
+
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (forceLock) {
+            synchronized (this) {
+                try {
+                    log.force(false);
+                } finally {
+                    log.close();
+                }
+            }
+        }
+        reportCompactionFailure();
+    }
+
+    private void reportCompactionFailure() throws IOException {
+        Exception e = compactionFailure;
+        if (e instanceof IOException) throw (IOException) e;
+        if (e != null) throw new IOException("user index compaction failed in " + dir, e);
+    }
+
+    private void compactInBackground() {
+        if (!compacting.compareAndSet(false, true)) return;
+        compactor.execute(() -> {
+            try {
+                doCompact();
+            } catch (IOException | RuntimeException e) {
+                compactionFailure = e;
+            } finally {
+                compacting.set(false);
+            }
+        });
+    }
+
+    /**
+     * Switch appends to log G+1, write the index of generation G+1 to a temp
+     * file and move it into place, then delete the older logs. A crash at any
+     * point leaves an index plus every log it needs, since logs at or above
+     * the index's generation are replayed.
+     */
+    private void doCompact() throws IOException {
+        long newGeneration;
+        synchronized (forceLock) { // no force() may be holding the log being closed
+            synchronized (this) {
+                newGeneration = generation + 1;
+                FileChannel next = openLog(newGeneration);
+                log.force(false);
+                log.close();
+                log = next;
+                generation = newGeneration;
+                logRecords = 0;
+                forced = appended;
+            }
+        }
+
+        // Everything in older logs is already in the directory; anything
+        // written meanwhile is also in the new log and replays on top
+        Path tmp = dir.resolve(INDEX_FILE + ".tmp");
+        try (OutputStream file = Files.newOutputStream(tmp)) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            int count = directory.size();
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(newGeneration);
+            out.writeInt(nextUserNum.getAsInt());
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) UserDirectory.encode(directory.peek(i), out);
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+        }
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            ch.force(true);
+        }
+        Files.move(tmp, dir.resolve(INDEX_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        for (long g : logGenerations(dir)) {
+            if (g < newGeneration) Files.deleteIfExists(dir.resolve(LOG_PREFIX + g));
+        }
+        compactionFailure = null;
+    }
+
+    private FileChannel openLog(long gen) throws IOException {
+        return FileChannel.open(dir.resolve(LOG_PREFIX + gen), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /** Replay one log into the directory; returns nextUserNum raised past any id in it */
+    private static int replayLog(Path file, UserDirectory into, int nextUserNum) throws IOException {
+        long good;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            CRC32 crc = new CRC32();
+            while (true) {
+                int start = buf.position();
+                if (buf.remaining() < 4) break;
+                int len = buf.getInt();
+                if (len < 0 || buf.remaining() < len + 4) {
+                    buf.position(start);
+                    break;
+                }
+                ByteBuffer record = buf.slice().limit(len);
+                crc.reset();
+                crc.update(record);
+                buf.position(start + 4 + len);
+                if ((int) crc.getValue() != buf.getInt()) {
+                    buf.position(start);
+                    break;
+                }
+                record.rewind();
+                nextUserNum = Math.max(nextUserNum, idNumber(record.duplicate()) + 1);
+                into.addAllEncoded(record, 1, len);
+                buf.position(start + 8 + len);
+            }
+            good = buf.position();
+            if (good == ch.size()) return nextUserNum;
+        }
+        // Torn tail from a crash mid-append
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.truncate(good);
+        }
+        return nextUserNum;
+    }
+
+    private static List<Long> logGenerations(Path dir) throws IOException {
+        List<Long> gens = new ArrayList<>();
+        try (DirectoryStream<Path> logs = Files.newDirectoryStream(dir, LOG_PREFIX + "*")) {
+            for (Path p : logs) {
+                try {
+                    gens.add(Long.parseLong(p.getFileName().toString().substring(LOG_PREFIX.length())));
+                } catch (NumberFormatException notOurs) {
+                    // ignore
+                }
+            }
+        }
+        gens.sort(null);
+        return gens;
+    }
+
+    /** 2041 for an encoded record whose id is "U2041", 0 for ids not in that form */
+    private static int idNumber(ByteBuffer record) {
+        int len = record.getInt();
+        if (len < 2 || record.get() != 'U') return 0;
+        int n = 0;
+        for (int i = 1; i < len; i++) {
+            int c = record.get();
+            if (c < '0' || c > '9' || n > (Integer.MAX_VALUE - 9) / 10) return 0;
+            n = n * 10 + (c - '0');
+        }
+        return n;
+    }
+}
@@ -0,0 +1,39 @@
+import java.util.List;
+
+/**
+ * UserSearchBenchmark — prefix + role + status queries over a large roster.
+ * Builds a store of the given size (default 50,000) spread over 100 habitats,
+ * then times "active residents whose username starts with hab3" and a
+ * narrower "hab37.1" query, after warm-up.
+ * Usage: UserSearchBenchmark [users]
+ */
+public class UserSearchBenchmark {
+
+    private static final int QUERIES = 20_000;
+
+    public static void main(String[] args) {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        UserStore store = new UserStore(new PasswordHasher(1));
+        for (int i = 0; i < users; i++) {
+            store.addNew("hab" + (i % 100) + "." + i + "@mars.local", "pw",
+                    i % 10 == 0 ? AccountStatus.LOCKED : AccountStatus.ACTIVE,
+                    i % 4 == 0 ? Role.INFRASTRUCTURE_TECHNICIAN : Role.COLONY_RESIDENT);
+        }
+        long start = System.nanoTime();
+        UserSearchIndex index = store.search();
+        System.out.printf("indexed %,d users in %d ms%n", users, (System.nanoTime() - start) / 1_000_000);
+
+        run(index, "hab3", 20);
+        run(index, "hab37.1", 20);
+        run(index, "", 20);
+    }
+
+    private static void run(UserSearchIndex index, String prefix, int limit) {
+        List<String> found = null;
+        for (int i = 0; i < QUERIES; i++) found = index.findUsernames(prefix, Role.COLONY_RESIDENT, AccountStatus.ACTIVE, limit);
+        long start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) found = index.findUsernames(prefix, Role.COLONY_RESIDENT, AccountStatus.ACTIVE, limit);
+        double micros = (System.nanoTime() - start) / 1e3 / QUERIES;
+        System.out.printf("prefix '%s' limit %d :: %d results, %.2f us/query%n", prefix, limit, found.size(), micros);
+    }
+}
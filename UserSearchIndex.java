@@ -0,0 +1,175 @@
+import java.util.*;
+
+/**
+ * Search over a UserStore's roster: username prefix, role and status.
+ *
+ * Usernames are kept in a PersistentSortedMap (username -> ordinal), so a
+ * prefix is a range scan costing O(log n + matches) and readers never
+ * lock. Role and status each have one ConcurrentBitSet per value over
+ * user ordinals. A prefix query walks the prefix range in username order,
+ * keeps the ordinals whose role and status bits are set and stops at the
+ * limit. A role or status query without a prefix walks the set bits of
+ * the sparser bitset instead and keeps the first usernames in order in a
+ * small heap, so it only touches matching users; when the matches are so
+ * dense that the username walk reaches the limit sooner (m * m > limit * n
+ * for m matches among n users), it walks usernames as a prefix query
+ * does. Neither builds a User.
+ *
+ * The store keeps the index current: it calls update() for every user it
+ * adds and for every change passed to UserStore.save(). Updates are
+ * serialised and each one reads the user's current state from the
+ * directory, so whichever runs last leaves the latest state indexed.
+ */
+public class UserSearchIndex {
+    private final UserDirectory directory;
+    private volatile PersistentSortedMap<String, Integer> byUsername = PersistentSortedMap.empty();
+    private volatile String[] usernameByOrdinal = new String[64];
+    private final ConcurrentBitSet[] byRole = new ConcurrentBitSet[Role.values().length];
+    private final ConcurrentBitSet[] byStatus = new ConcurrentBitSet[AccountStatus.values().length];
+
+    public UserSearchIndex(UserDirectory directory) {
+        this.directory = directory;
+        int bits = Math.max(64, directory.size());
+        for (int i = 0; i < byRole.length; i++) byRole[i] = new ConcurrentBitSet(bits);
+        for (int i = 0; i < byStatus.length; i++) byStatus[i] = new ConcurrentBitSet(bits);
+    }
+
+    /** Index (or re-index) every user in the directory */
+    public synchronized void rebuild() {
+        PersistentSortedMap<String, Integer> names = PersistentSortedMap.empty();
+        for (ConcurrentBitSet b : byRole) b.clearAll();
+        for (ConcurrentBitSet b : byStatus) b.clearAll();
+        int n = directory.size();
+        String[] byOrdinal = new String[Math.max(64, n)];
+        usernameByOrdinal = byOrdinal;
+        for (int ordinal = 0; ordinal < n; ordinal++) {
+            User u = directory.peek(ordinal);
+            names = names.put(u.username, ordinal);
+            byOrdinal[ordinal] = u.username;
+            setBits(ordinal, u);
+        }
+        byUsername = names;
+    }
+
+    /**
+     * Record the current state of the user at an ordinal. It is read from
+     * the directory here, under the index lock, rather than passed in, so an
+     * update queued behind a newer save cannot put back older role or
+     * status bits.
+     */
+    public synchronized void update(int ordinal) {
+        User u = directory.peek(ordinal);
+        if (!Integer.valueOf(ordinal).equals(byUsername.get(u.username))) {
+            byUsername = byUsername.put(u.username, ordinal);
+        }
+        String[] byOrdinal = usernameByOrdinal;
+        if (ordinal >= byOrdinal.length) byOrdinal = Arrays.copyOf(byOrdinal, Math.max(ordinal + 1, byOrdinal.length * 2));
+        byOrdinal[ordinal] = u.username; // before the bits, so a reader that sees a bit finds the name
+        usernameByOrdinal = byOrdinal;
+        setBits(ordinal, u);
+    }
+
+    /** Forget every user (after the store is cleared) */
+    public synchronized void clear() {
+        byUsername = PersistentSortedMap.empty();
+        usernameByOrdinal = new String[64];
+        for (ConcurrentBitSet b : byRole) b.clearAll();
+        for (ConcurrentBitSet b : byStatus) b.clearAll();
+    }
+
+    /**
+     * Usernames in ascending order that start with prefix (normalized like
+     * UserStore usernames) and have the given role and status.
+     * @param prefix null or empty for any username
+     * @param role null for any role
+     * @param status null for any status
+     * @param limit most results to return
+     */
+    public List<String> findUsernames(String prefix, Role role, AccountStatus status, int limit) {
+        List<String> out = new ArrayList<>(Math.min(limit, 64));
+        String p = prefix == null ? "" : prefix.trim().toLowerCase();
+        ConcurrentBitSet[] filters = filters(role, status);
+        if (limit <= 0) return out;
+        if (p.isEmpty() && filters.length > 0) {
+            ConcurrentBitSet walk = sparsest(filters);
+            long m = walk.cardinality();
+            if (m * m <= (long) limit * byUsername.size()) return findByBits(walk, filters, limit);
+        }
+
+        PersistentSortedMap<String, Integer> names = byUsername;
+        Iterator<Map.Entry<String, Integer>> it = p.isEmpty() ? names.iterator() : names.range(p, p + Character.MAX_VALUE);
+        while (out.size() < limit && it.hasNext()) {
+            Map.Entry<String, Integer> e = it.next();
+            if (matches(e.getValue(), filters)) out.add(e.getKey());
+        }
+        return out;
+    }
+
+    private static ConcurrentBitSet sparsest(ConcurrentBitSet[] filters) {
+        ConcurrentBitSet walk = filters[0];
+        if (filters.length > 1 && filters[1].cardinality() < walk.cardinality()) walk = filters[1];
+        return walk;
+    }
+
+    /** The first limit usernames, in order, among the ordinals set in walk and every filter */
+    private List<String> findByBits(ConcurrentBitSet walk, ConcurrentBitSet[] filters, int limit) {
+        String[] names = usernameByOrdinal;
+        PriorityQueue<String> first = new PriorityQueue<>(Math.min(limit, 64), Collections.reverseOrder());
+        for (int ordinal = walk.nextSetBit(0); ordinal >= 0 && ordinal < names.length; ordinal = walk.nextSetBit(ordinal + 1)) {
+            String name = names[ordinal];
+            if (name == null || !matches(ordinal, filters)) continue;
+            if (first.size() < limit) {
+                first.add(name);
+            } else if (name.compareTo(first.peek()) < 0) {
+                first.poll();
+                first.add(name);
+            }
+        }
+        List<String> out = new ArrayList<>(first);
+        Collections.sort(out);
+        return out;
+    }
+
+    /** Like findUsernames, but the users themselves */
+    public List<User> find(String prefix, Role role, AccountStatus status, int limit) {
+        List<User> out = new ArrayList<>();
+        for (String name : findUsernames(prefix, role, status, limit)) {
+            User u = directory.get(name);
+            if (u != null) out.add(u);
+        }
+        return out;
+    }
+
+    /** Users with the given role and status (null for any) */
+    public int count(Role role, AccountStatus status) {
+        if (role == null && status == null) return byUsername.size();
+        if (role == null) return byStatus[status.ordinal()].cardinality();
+        if (status == null) return byRole[role.ordinal()].cardinality();
+        return byRole[role.ordinal()].andCardinality(byStatus[status.ordinal()]);
+    }
+
+    private void setBits(int ordinal, User u) {
+        for (int i = 0; i < byRole.length; i++) {
+            if (i == u.role.ordinal()) byRole[i].set(ordinal);
+            else byRole[i].clear(ordinal);
+        }
+        for (int i = 0; i < byStatus.length; i++) {
+            if (i == u.status.ordinal()) byStatus[i].set(ordinal);
+            else byStatus[i].clear(ordinal);
+        }
+    }
+
+    private ConcurrentBitSet[] filters(Role role, AccountStatus status) {
+        if (role == null && status == null) return new ConcurrentBitSet[0];
+        if (role == null) return new ConcurrentBitSet[] { byStatus[status.ordinal()] };
+        if (status == null) return new ConcurrentBitSet[] { byRole[role.ordinal()] };
+        return new ConcurrentBitSet[] { byRole[role.ordinal()], byStatus[status.ordinal()] };
+    }
+
+    private static boolean matches(int ordinal, ConcurrentBitSet[] filters) {
+        for (ConcurrentBitSet f : filters) {
+            if (!f.get(ordinal)) return false;
+        }
+        return true;
+    }
+}
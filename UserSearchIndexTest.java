@@ -0,0 +1,116 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * UserSearchIndexTest — JUnit 4 tests for prefix, role and status search
+ * over a UserStore.
+ */
+public class UserSearchIndexTest {
+
+    private static UserStore roster() {
+        UserStore store = new UserStore(new PasswordHasher(1));
+        store.addNew("hab3.ada@mars.local", "pw", AccountStatus.ACTIVE, Role.COLONY_RESIDENT);
+        store.addNew("hab3.bob@mars.local", "pw", AccountStatus.LOCKED, Role.COLONY_RESIDENT);
+        store.addNew("Hab3.Cy@mars.local", "pw", AccountStatus.ACTIVE, Role.INFRASTRUCTURE_TECHNICIAN);
+        store.addNew("hab30.dee@mars.local", "pw", AccountStatus.ACTIVE, Role.COLONY_RESIDENT);
+        store.addNew("hab4.eve@mars.local", "pw", AccountStatus.ACTIVE, Role.COLONY_RESIDENT);
+        return store;
+    }
+
+    @Test
+    public void prefixWithRoleAndStatus() {
+        UserSearchIndex index = roster().search();
+
+        assertEquals(Arrays.asList("hab3.ada@mars.local", "hab30.dee@mars.local"),
+                index.findUsernames(" HAB3", Role.COLONY_RESIDENT, AccountStatus.ACTIVE, 10));
+        assertEquals(Arrays.asList("hab3.ada@mars.local", "hab3.bob@mars.local", "hab3.cy@mars.local"),
+                index.findUsernames("hab3.", null, null, 10));
+        assertEquals(1, index.findUsernames("hab", null, AccountStatus.LOCKED, 10).size());
+        assertEquals(2, index.findUsernames("hab", null, null, 2).size());
+        assertTrue(index.findUsernames("zz", null, null, 10).isEmpty());
+        assertEquals(3, index.count(Role.COLONY_RESIDENT, AccountStatus.ACTIVE));
+        assertEquals(5, index.count(null, null));
+    }
+
+    @Test
+    public void indexFollowsLaterChanges() {
+        UserStore store = roster();
+        UserSearchIndex index = store.search();
+
+        store.addNew("hab3.fay@mars.local", "pw", AccountStatus.ACTIVE, Role.COLONY_RESIDENT);
+        User bob = store.get("hab3.bob@mars.local");
+        bob.status = AccountStatus.ACTIVE;
+        store.save(bob);
+
+        List<User> found = index.find("hab3.", Role.COLONY_RESIDENT, AccountStatus.ACTIVE, 10);
+        assertEquals(3, found.size());
+        assertSame(bob, found.get(1));
+        assertEquals("hab3.fay@mars.local", found.get(2).username);
+    }
+
+    @Test
+    public void lockoutThroughAuthServiceLeavesActiveResults() {
+        UserStore store = roster();
+        AuthService auth = new AuthService(store.backingMap(), 2, java.time.Duration.ofMinutes(15));
+        auth.login("hab3.ada@mars.local", "wrong");
+        auth.login("hab3.ada@mars.local", "wrong");
+
+        assertEquals(Arrays.asList("hab30.dee@mars.local"),
+                store.search().findUsernames("hab3", Role.COLONY_RESIDENT, AccountStatus.ACTIVE, 10));
+    }
+
+    @Test
+    public void seedingResetsIndex() {
+        UserStore store = roster();
+        store.search();
+        store.seedSamples();
+        assertTrue(store.search().findUsernames("hab", null, null, 10).isEmpty());
+        assertEquals(Arrays.asList("resident.valid@mars.local"),
+                store.search().findUsernames("resident", null, AccountStatus.ACTIVE, 10));
+    }
+
+    @Test
+    public void roleOrStatusWithoutPrefixKeepsUsernameOrder() {
+        UserStore store = new UserStore(new PasswordHasher(1));
+        for (int i = 99; i >= 0; i--) { // registered in reverse name order
+            store.addNew(String.format("crew%02d@mars.local", i), "pw",
+                    i % 25 == 0 ? AccountStatus.LOCKED : AccountStatus.ACTIVE,
+                    i % 20 == 0 ? Role.INFRASTRUCTURE_TECHNICIAN : Role.COLONY_RESIDENT);
+        }
+        UserSearchIndex index = store.search();
+
+        // sparse matches walk the bitsets
+        assertEquals(Arrays.asList("crew00@mars.local", "crew25@mars.local", "crew50@mars.local"),
+                index.findUsernames(null, null, AccountStatus.LOCKED, 3));
+        assertEquals(Arrays.asList("crew20@mars.local", "crew40@mars.local"),
+                index.findUsernames("", Role.INFRASTRUCTURE_TECHNICIAN, AccountStatus.ACTIVE, 2));
+        assertEquals(95, index.findUsernames(null, Role.COLONY_RESIDENT, null, 1_000).size());
+        assertTrue(index.findUsernames(null, Role.COLONY_RESIDENT, null, 0).isEmpty());
+        // dense matches walk the usernames
+        assertEquals(Arrays.asList("crew01@mars.local", "crew02@mars.local", "crew03@mars.local"),
+                index.findUsernames(null, null, AccountStatus.ACTIVE, 3));
+
+        store.get("crew01@mars.local").status = AccountStatus.LOCKED;
+        store.save(store.get("crew01@mars.local"));
+        assertEquals(Arrays.asList("crew00@mars.local", "crew01@mars.local"),
+                index.findUsernames(null, null, AccountStatus.LOCKED, 2));
+    }
+
+    @Test
+    public void lateUpdateIndexesTheCurrentRecord() {
+        UserStore store = roster();
+        UserSearchIndex index = store.search();
+        User old = store.get("hab30.dee@mars.local");
+        old.status = AccountStatus.LOCKED;
+        store.save(old);
+        store.save(new User(old.userId, old.username, old.password, AccountStatus.ACTIVE, Role.INFRASTRUCTURE_TECHNICIAN));
+
+        index.update(store.getDirectory().ordinalOf(old.username)); // e.g. the first save's update running late
+        assertEquals(Arrays.asList("hab30.dee@mars.local"),
+                index.findUsernames("hab30", Role.INFRASTRUCTURE_TECHNICIAN, AccountStatus.ACTIVE, 10));
+        assertTrue(index.findUsernames("hab30", null, AccountStatus.LOCKED, 10).isEmpty());
+    }
+}
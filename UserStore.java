@@ -1,9 +1,78 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Users keyed by normalized username, held in a compact UserDirectory and
+ * optionally persisted through a UserJournal (open).
+ */
 public class UserStore {
-    private final Map<String, User> users = new HashMap<>();
-    private final List<User> userList = new ArrayList<>(); // Array-based storage
-    private int nextUserNum = 2000;
+    // Ids come from a shared counter in blocks, so concurrent registrations
+    // only touch it once per ID_BLOCK users each
+    private static final int ID_BLOCK = 64;
+
+    private final UserDirectory directory;
+    private final PasswordHasher hasher;
+    private final Map<String, User> users = new DirectoryMap();
+    private final List<User> userList = new DirectoryList(); // Array-based storage
+    private final AtomicInteger nextUserNum = new AtomicInteger(2000);
+    // This thread's current id block: { next, end }
+    private final ThreadLocal<int[]> idBlock = ThreadLocal.withInitial(() -> new int[2]);
+    private final UserJournal journal; // null for a memory-only store
+    private volatile UserSearchIndex indexForUpdates; // set as soon as the index starts building
+    private volatile UserSearchIndex search;          // set once it is complete
+
+    public UserStore() {
+        this(false);
+    }
+
+    /** @param offHeap keep the roster in direct buffers outside the Java heap */
+    public UserStore(boolean offHeap) {
+        this(offHeap, new PasswordHasher());
+    }
+
+    /** @param hasher hashes every password before it is stored */
+    public UserStore(PasswordHasher hasher) {
+        this(false, hasher);
+    }
+
+    public UserStore(boolean offHeap, PasswordHasher hasher) {
+        this.directory = new UserDirectory(offHeap);
+        this.hasher = hasher;
+        this.journal = null;
+    }
+
+    private UserStore(Path dir, boolean offHeap, PasswordHasher hasher) throws IOException {
+        this.directory = new UserDirectory(offHeap);
+        this.hasher = hasher;
+        UserJournal.Loaded loaded = UserJournal.load(dir, directory);
+        nextUserNum.set(Math.max(nextUserNum.get(), loaded.nextUserNum));
+        this.journal = new UserJournal(dir, loaded, directory, nextUserNum::get);
+    }
+
+    /**
+     * Persistent store kept in dir (created if missing): loads the roster at
+     * startup and logs every registration and every save() (AuthService
+     * saves lockouts and password changes through backingMap().put)
+     */
+    public static UserStore open(Path dir) throws IOException {
+        return open(dir, false);
+    }
+
+    /** Persistent store kept in dir, optionally with the roster off-heap */
+    public static UserStore open(Path dir, boolean offHeap) throws IOException {
+        return open(dir, offHeap, new PasswordHasher());
+    }
+
+    public static UserStore open(Path dir, boolean offHeap, PasswordHasher hasher) throws IOException {
+        return new UserStore(dir, offHeap, hasher);
+    }
 
     public String normalize(String s) {
         return (s == null) ? "" : s.trim().toLowerCase();
@@ -19,27 +88,165 @@ public class UserStore {
     }
 
     public boolean exists(String usernameRaw) {
-        return users.containsKey(normalize(usernameRaw));
+        return directory.contains(normalize(usernameRaw));
     }
 
     public User get(String usernameRaw) {
-        return users.get(normalize(usernameRaw));
+        return directory.get(normalize(usernameRaw));
+    }
+
+    public UserDirectory getDirectory() {
+        return directory;
     }
 
     public User addNew(String usernameRaw, String password, AccountStatus status, Role role) {
         String key = normalize(usernameRaw);
-        String userId = "U" + (nextUserNum++);
-        User u = new User(userId, key, password, status, role);
-        users.put(key, u);
-        userList.add(u); // Add to array storage
-        return u;
+        String userId = nextUserId();
+        User user = new User(userId, key, hashed(password), status, role);
+        indexed(directory.addLive(user)); // the caller holds on to it, so it is the live object
+        if (journal != null) journal.append(Collections.singletonList(user));
+        return user;
+    }
+
+    /**
+     * Record a change to a user's persistent fields (password, status,
+     * failedAttempts). A user not in the store, or a different object for
+     * a username already in it, is added or replaces the old one. A
+     * plaintext password is replaced by its hash first.
+     */
+    public void save(User u) {
+        u.password = hashed(u.password);
+        indexed(directory.save(u));
+        if (journal != null) journal.append(Collections.singletonList(u));
+    }
+
+    /**
+     * Prefix / role / status search over this store, built on first use and
+     * kept current from then on.
+     */
+    public UserSearchIndex search() {
+        UserSearchIndex index = search;
+        if (index != null) return index;
+        synchronized (this) {
+            if (search == null) {
+                index = new UserSearchIndex(directory);
+                indexForUpdates = index; // changes from here on reach it...
+                index.rebuild();          // ...and this picks up everything before
+                search = index;
+            }
+            return search;
+        }
+    }
+
+    private void indexed(int ordinal) {
+        UserSearchIndex index = indexForUpdates;
+        if (index != null) index.update(ordinal);
+    }
+
+    public boolean isEmpty() {
+        return directory.size() == 0;
+    }
+
+    public boolean isPersistent() {
+        return journal != null;
+    }
+
+    /**
+     * Copy live users into the roster and drop string bytes it no longer
+     * uses; a persistent store also writes a fresh index file
+     */
+    public void checkpoint() throws IOException {
+        directory.checkpoint();
+        if (journal != null) journal.compact();
+    }
+
+    /** Flush and close the change log (no-op for a memory-only store) */
+    public void close() throws IOException {
+        if (journal != null) journal.close();
+    }
+
+    /**
+     * Bulk-import a roster in CSV form, one user per line:
+     *   username,password,status,role
+     * A header line starting with "username", blank lines and lines starting
+     * with '#' are skipped; the password may contain commas and is stored
+     * hashed unless it already is an encoded hash. Every line is
+     * checked before anything is added, then all users get ids from one
+     * block and go into the directory in a single batch.
+     * @return number of users added (or replaced, by username)
+     * @throws IllegalArgumentException naming the first bad line
+     */
+    public int addAll(Reader csv) throws IOException {
+        List<User> batch = new ArrayList<>();
+        BufferedReader in = csv instanceof BufferedReader ? (BufferedReader) csv : new BufferedReader(csv);
+        String line;
+        int lineNo = 0;
+        while ((line = in.readLine()) != null) {
+            lineNo++;
+            String t = line.trim();
+            if (t.isEmpty() || t.startsWith("#") || (lineNo == 1 && t.toLowerCase().startsWith("username"))) continue;
+            batch.add(parseCsvUser(t, lineNo));
+        }
+
+        int first = nextUserNum.getAndAdd(batch.size());
+        User[] hashedWithIds = new User[batch.size()];
+        Arrays.parallelSetAll(hashedWithIds, i -> { // hashing dominates a large import
+            User u = batch.get(i);
+            return new User("U" + (first + i), u.username, hashed(u.password), u.status, u.role);
+        });
+        List<User> withIds = Arrays.asList(hashedWithIds);
+        int[] ordinals = directory.addAll(withIds);
+        for (int i = 0; i < ordinals.length; i++) indexed(ordinals[i]);
+        if (journal != null) journal.append(withIds);
+        return withIds.size();
+    }
+
+    /** Bulk-import a CSV roster file; see addAll(Reader) */
+    public int addAll(Path csvFile) throws IOException {
+        try (Reader in = Files.newBufferedReader(csvFile, StandardCharsets.UTF_8)) {
+            return addAll(in);
+        }
+    }
+
+    /** Parsed user without an id yet */
+    private User parseCsvUser(String line, int lineNo) {
+        int firstComma = line.indexOf(',');
+        int lastComma = line.lastIndexOf(',');
+        int statusComma = lastComma < 0 ? -1 : line.lastIndexOf(',', lastComma - 1);
+        if (firstComma < 0 || statusComma <= firstComma) {
+            throw new IllegalArgumentException("line " + lineNo + ": expected username,password,status,role");
+        }
+        String username = normalize(line.substring(0, firstComma));
+        if (username.isEmpty()) throw new IllegalArgumentException("line " + lineNo + ": empty username");
+        try {
+            AccountStatus status = AccountStatus.valueOf(line.substring(statusComma + 1, lastComma).trim().toUpperCase());
+            Role role = Role.valueOf(line.substring(lastComma + 1).trim().toUpperCase());
+            return new User(null, username, line.substring(firstComma + 1, statusComma), status, role);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("line " + lineNo + ": unknown status or role", e);
+        }
+    }
+
+    // Already-encoded hashes (e.g. from an exported roster) are kept as they are
+    private String hashed(String password) {
+        return password == null || PasswordHasher.isHash(password) ? password : hasher.hash(password);
+    }
+
+    private String nextUserId() {
+        int[] block = idBlock.get();
+        if (block[0] == block[1]) {
+            block[0] = nextUserNum.getAndAdd(ID_BLOCK);
+            block[1] = block[0] + ID_BLOCK;
+        }
+        return "U" + (block[0]++);
     }
 
     /** Seed three ACTIVE users so they can log in immediately. */
     public void seedSamples() {
         // Clear existing data first
-        users.clear();
-        userList.clear();
+        directory.clear();
+        UserSearchIndex index = indexForUpdates;
+        if (index != null) index.clear();
         
         User[] sampleUsers = new User[] {
             new User("U1001", "resident.valid@mars.local", "Passw0rd!", AccountStatus.ACTIVE, Role.COLONY_RESIDENT),
@@ -48,13 +255,20 @@ public class UserStore {
         };
 
         for (User user : sampleUsers) {
-            String normalizedUsername = normalize(user.username);
-            users.put(normalizedUsername, user);
-            userList.add(user);
+            user.password = hashed(user.password);
+            indexed(directory.add(user)); // sample usernames are already normalized
+        }
+        if (journal != null) {
+            try {
+                journal.compact(); // replaces whatever was on disk
+            } catch (IOException e) {
+                throw new UncheckedIOException("could not save sample users", e);
+            }
         }
     }
 
     // Method to get users as array - THIS IS THE METHOD YOU NEED
+    // (copies every user; prefer get/exists for lookups, get for a user to change)
     public User[] getUsersArray() {
         return userList.toArray(new User[0]);
     }
@@ -68,4 +282,70 @@ public class UserStore {
         }
         System.out.println("Total users: " + userList.size());
     }
-}
\ No newline at end of file
+
+    /**
+     * Map view: normalized username -> user; put saves the user. get hands
+     * out the user's live object; iterating peeks, so a user not yet live
+     * comes back as a detached copy and one pass does not pull the whole
+     * roster onto the heap.
+     */
+    private class DirectoryMap extends AbstractMap<String, User> {
+        @Override
+        public User put(String key, User value) {
+            if (!value.username.equals(key)) throw new IllegalArgumentException("key is not the user's username: " + key);
+            User old = directory.get(key);
+            save(value);
+            return old;
+        }
+
+        @Override
+        public User get(Object key) {
+            return key instanceof String ? directory.get((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && directory.contains((String) key);
+        }
+
+        @Override
+        public int size() {
+            return directory.size();
+        }
+
+        @Override
+        public Set<Entry<String, User>> entrySet() {
+            return new AbstractSet<Entry<String, User>>() {
+                @Override
+                public Iterator<Entry<String, User>> iterator() {
+                    Iterator<User> it = userList.iterator();
+                    return new Iterator<Entry<String, User>>() {
+                        public boolean hasNext() { return it.hasNext(); }
+                        public Entry<String, User> next() {
+                            User u = it.next();
+                            return new SimpleImmutableEntry<>(u.username, u);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return directory.size();
+                }
+            };
+        }
+    }
+
+    /** Read-only List view in insertion order (peeks, like iterating the map) */
+    private class DirectoryList extends AbstractList<User> implements RandomAccess {
+        @Override
+        public User get(int index) {
+            return directory.peek(index);
+        }
+
+        @Override
+        public int size() {
+            return directory.size();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+
+/**
+ * UserStorePersistenceTest — JUnit 4 tests for the file-backed UserStore:
+ * change log replay, index compaction and crash leftovers.
+ */
+public class UserStorePersistenceTest {
+
+    private static final PasswordHasher HASHER = new PasswordHasher(1_000);
+
+    @Test
+    public void registrationsAndLockoutsSurviveRestart() throws Exception {
+        Path dir = Files.createTempDirectory("users");
+        UserStore store = UserStore.open(dir, false, HASHER);
+        assertTrue(store.isEmpty());
+        store.seedSamples();
+        store.addNew("New.Settler@mars.local", "Hab1tat!", AccountStatus.ACTIVE, Role.COLONY_RESIDENT);
+
+        AuthService auth = new AuthService(store.backingMap(), 3, Duration.ofMinutes(15), new AuditLog(64),
+                HASHER, new VerifiedCredentialCache(), LoginRateLimiter.unlimited());
+        for (int i = 0; i < 3; i++) auth.login("resident.valid@mars.local", "wrong");
+        assertEquals(AccountStatus.LOCKED, store.get("resident.valid@mars.local").status);
+        assertTrue(auth.login("new.settler@mars.local", "Hab1tat!").isPresent());
+        store.close();
+
+        UserStore reopened = UserStore.open(dir, false, HASHER);
+        assertEquals(4, reopened.getDirectory().size());
+        User locked = reopened.get("resident.valid@mars.local");
+        assertEquals(AccountStatus.LOCKED, locked.status);
+        assertEquals(3, locked.failedAttempts);
+        User settler = reopened.get("new.settler@mars.local");
+        assertTrue("the registered password persisted as a hash", PasswordHasher.isHash(settler.password));
+        assertNotEquals(settler.userId,
+                reopened.addNew("another@mars.local", "pw", AccountStatus.ACTIVE, Role.COLONY_RESIDENT).userId);
+        reopened.close();
+    }
+
+    @Test
+    public void badPasswordsBelowTheLimitWriteNothing() throws Exception {
+        Path dir = Files.createTempDirectory("users");
+        UserStore store = UserStore.open(dir, false, HASHER);
+        store.seedSamples();
+        AuthService auth = new AuthService(store.backingMap(), 1_000, Duration.ofMinutes(15), new AuditLog(64),
+                HASHER, new VerifiedCredentialCache(), LoginRateLimiter.unlimited());
+        for (int i = 0; i < 500; i++) auth.login("resident.valid@mars.local", "wrong");
+        assertEquals(500, store.get("resident.valid@mars.local").failedAttempts);
+        store.close();
+
+        long logged = 0;
+        try (DirectoryStream<Path> logs = Files.newDirectoryStream(dir, UserJournal.LOG_PREFIX + "*")) {
+            for (Path log : logs) logged += Files.size(log);
+        }
+        assertEquals(0, logged);
+    }
+
+    @Test
+    public void checkpointWritesIndexAndDropsOldLog() throws Exception {
+        Path dir = Files.createTempDirectory("users");
+        UserStore store = UserStore.open(dir, false, HASHER);
+        for (int i = 0; i < 50; i++) {
+            store.addNew("settler." + i + "@mars.local", "pw" + i, AccountStatus.ACTIVE, Role.COLONY_RESIDENT);
+        }
+        store.checkpoint();
+        store.addNew("late@mars.local", "pw", AccountStatus.EXPIRED, Role.COLONY_RESIDENT);
+        store.close();
+
+        assertTrue(Files.exists(dir.resolve(UserJournal.INDEX_FILE)));
+        assertFalse(Files.exists(dir.resolve(UserJournal.LOG_PREFIX + 0)));
+        assertTrue(Files.exists(dir.resolve(UserJournal.LOG_PREFIX + 1)));
+
+        UserStore reopened = UserStore.open(dir, false, HASHER);
+        assertEquals(51, reopened.getDirectory().size());
+        assertTrue(HASHER.verify("pw42", reopened.get("settler.42@mars.local").password));
+        assertEquals(AccountStatus.EXPIRED, reopened.get("late@mars.local").status);
+        reopened.close();
+    }
+
+    @Test
+    public void tornRecordAtEndOfLogIsDropped() throws Exception {
+        Path dir = Files.createTempDirectory("users");
+        UserStore store = UserStore.open(dir, false, HASHER);
+        store.addNew("first@mars.local", "pw", AccountStatus.ACTIVE, Role.COLONY_RESIDENT);
+        store.addNew("second@mars.local", "pw", AccountStatus.ACTIVE, Role.COLONY_RESIDENT);
+        store.close();
+
+        Path log = dir.resolve(UserJournal.LOG_PREFIX + 0);
+        try (FileChannel ch = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            ch.truncate(ch.size() - 3); // crash part-way through the second append
+        }
+
+        UserStore reopened = UserStore.open(dir, false, HASHER);
+        assertTrue(reopened.exists("first@mars.local"));
+        assertFalse(reopened.exists("second@mars.local"));
+        reopened.addNew("third@mars.local", "pw", AccountStatus.ACTIVE, Role.COLONY_RESIDENT);
+        reopened.close();
+
+        UserStore again = UserStore.open(dir, false, HASHER);
+        assertEquals(2, again.getDirectory().size());
+        assertTrue(again.exists("third@mars.local"));
+        again.close();
+    }
+
+    @Test
+    public void passwordsNeverReachTheFilesInPlaintext() throws Exception {
+        Path dir = Files.createTempDirectory("users");
+        UserStore store = UserStore.open(dir, false, HASHER);
+        store.seedSamples();
+        store.addNew("registered@mars.local", "Regist3red!", AccountStatus.ACTIVE, Role.COLONY_RESIDENT);
+        store.addAll(new StringReader("imported@mars.local,Imp0rted!,ACTIVE,COLONY_RESIDENT\n"));
+        store.checkpoint();
+        User u = store.get("registered@mars.local");
+        u.password = "Ch4nged!";
+        store.save(u);
+        store.close();
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path f : files) {
+                String raw = new String(Files.readAllBytes(f), StandardCharsets.ISO_8859_1);
+                for (String pw : new String[] { "Passw0rd!", "Regist3red!", "Imp0rted!", "Ch4nged!" }) {
+                    assertFalse(pw + " in " + f.getFileName(), raw.contains(pw));
+                }
+            }
+        }
+        try {
+            UserDirectory.encode(new User("U1", "plain@mars.local", "Plain!", AccountStatus.ACTIVE, Role.COLONY_RESIDENT),
+                    new DataOutputStream(new ByteArrayOutputStream()));
+            fail("a plaintext password was encoded");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void failedBackgroundCompactionIsReported() throws Exception {
+        Path dir = Files.createTempDirectory("users");
+        Path blocker = Files.createDirectories(dir.resolve(UserJournal.INDEX_FILE + ".tmp").resolve("x"));
+        UserStore store = UserStore.open(dir, false, HASHER);
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < UserJournal.COMPACT_AFTER; i++) {
+            csv.append("settler.").append(i).append("@mars.local,pw,ACTIVE,COLONY_RESIDENT\n");
+        }
+        store.addAll(new StringReader(csv.toString())); // one batch past the threshold starts a compaction
+        try {
+            store.close();
+            fail("close did not report the failed compaction");
+        } catch (IOException expected) {
+        }
+
+        Files.delete(blocker);
+        Files.delete(blocker.getParent());
+        UserStore reopened = UserStore.open(dir, false, HASHER);
+        assertEquals(UserJournal.COMPACT_AFTER, reopened.getDirectory().size());
+        reopened.close();
+    }
+}
@@ -0,0 +1,58 @@
+import java.io.StringReader;
+import java.nio.file.*;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * UserStoreStartupBenchmark — cold start of a persistent UserStore.
+ * Writes a roster of the given size (default 1,000,000), compacts it into
+ * an index, appends a day's worth of changes to the log, then times
+ * reopening the store: index and log are memory-mapped and loaded in one
+ * batch. The target is well under a second for a large colony roster.
+ * Usage: UserStoreStartupBenchmark [users]
+ */
+public class UserStoreStartupBenchmark {
+
+    private static final int CHANGES = 20_000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path dir = Files.createTempDirectory("userstore-bench");
+        try {
+            long start = System.nanoTime();
+            UserStore store = UserStore.open(dir, false, new PasswordHasher(1));
+            StringBuilder csv = new StringBuilder(users * 48);
+            for (int i = 0; i < users; i++) {
+                csv.append("settler.").append(i).append("@mars.local,pbkdf2$210000$")
+                   .append(Integer.toHexString(i * 0x9E3779B1)).append("$aGFzaGhhc2hoYXNoaGFzaGhhc2g")
+                   .append(i % 97 == 0 ? ",LOCKED," : ",ACTIVE,")
+                   .append(i % 2 == 0 ? "COLONY_RESIDENT" : "INFRASTRUCTURE_TECHNICIAN").append('\n');
+            }
+            store.addAll(new StringReader(csv.toString()));
+            store.checkpoint();
+            for (int i = 0; i < CHANGES; i++) {
+                User u = store.get("settler." + (i * 31 % users) + "@mars.local");
+                u.failedAttempts++;
+                store.save(u);
+            }
+            store.close();
+            System.out.printf("wrote %,d users + %,d logged changes in %d ms (index %,d KB)%n", users, CHANGES,
+                    (System.nanoTime() - start) / 1_000_000, Files.size(dir.resolve(UserJournal.INDEX_FILE)) / 1024);
+
+            for (int r = 1; r <= ROUNDS; r++) {
+                System.gc();
+                start = System.nanoTime();
+                UserStore reopened = UserStore.open(dir, false, new PasswordHasher(1));
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                System.out.printf("round %d :: cold start %,d users in %d ms%n",
+                        r, reopened.getDirectory().size(), millis);
+                reopened.close();
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dense ordinals (0, 1, 2, ...) for usernames, handed out in the order the
+ * names are first seen, so per-user flags can live in a bitmap indexed by
+ * ordinal instead of a set of strings.
+ *
+ * Assigning is serialised; lookups take no lock. The name is stored before
+ * the new size is published, so a reader that sees the size can read every
+ * name below it.
+ */
+public class UsernameOrdinals {
+    private final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[64];
+    private volatile int size;
+
+    /** Ordinal of the username, assigning the next one if it has none */
+    public int ordinalOf(String username) {
+        Integer ord = ordinals.get(username);
+        return ord != null ? ord : assign(username);
+    }
+
+    /** Ordinal of the username, or -1 if it has none */
+    public int find(String username) {
+        Integer ord = ordinals.get(username);
+        return ord == null ? -1 : ord;
+    }
+
+    public String nameOf(int ordinal) {
+        if (ordinal < 0 || ordinal >= size) throw new IndexOutOfBoundsException("ordinal " + ordinal);
+        return names[ordinal];
+    }
+
+    /** Ordinals handed out so far; they are exactly 0 .. size() - 1 */
+    public int size() {
+        return size;
+    }
+
+    private synchronized int assign(String username) {
+        Integer ord = ordinals.get(username);
+        if (ord != null) return ord;
+        int next = size;
+        String[] n = names;
+        if (next == n.length) n = Arrays.copyOf(n, n.length * 2);
+        n[next] = username;
+        names = n;
+        size = next + 1; // publish: the name above is visible to readers that see this
+        ordinals.put(username, next);
+        return next;
+    }
+}
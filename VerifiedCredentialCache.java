@@ -0,0 +1,103 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short-lived memory of recently verified logins, so a burst of repeat
+ * logins (shift change) pays the full password hashing cost once per user.
+ *
+ * Only successful verifications are remembered, as a salted SHA-256 of the
+ * password (the salt is random per cache and never leaves the process).
+ * An entry is tied to the exact stored hash it was verified against, so a
+ * password change invalidates it. Entries expire after the TTL and the
+ * cache never holds more than maxEntries.
+ */
+public class VerifiedCredentialCache {
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(2);
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final byte[] pepper = new byte[16];
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private static final class Entry {
+        final String stored;
+        final byte[] digest;
+        final long expiresAtNanos;
+
+        Entry(String stored, byte[] digest, long expiresAtNanos) {
+            this.stored = stored;
+            this.digest = digest;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    public VerifiedCredentialCache() {
+        this(DEFAULT_TTL, DEFAULT_MAX_ENTRIES);
+    }
+
+    public VerifiedCredentialCache(Duration ttl, int maxEntries) {
+        if (ttl == null || ttl.isNegative()) throw new IllegalArgumentException("ttl must be >= 0");
+        if (maxEntries < 0) throw new IllegalArgumentException("maxEntries must be >= 0");
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+        new SecureRandom().nextBytes(pepper);
+    }
+
+    /** True if this password was verified against this stored hash within the TTL */
+    public boolean isVerified(String username, String stored, String password) {
+        Entry e = entries.get(username);
+        if (e == null) return false;
+        if (System.nanoTime() - e.expiresAtNanos >= 0) {
+            entries.remove(username, e);
+            return false;
+        }
+        return e.stored.equals(stored) && MessageDigest.isEqual(e.digest, digest(password));
+    }
+
+    /** Remember a successful verification */
+    public void remember(String username, String stored, String password) {
+        if (ttlNanos == 0 || maxEntries == 0) return;
+        long now = System.nanoTime();
+        if (entries.size() >= maxEntries && !entries.containsKey(username)) {
+            evict(now);
+        }
+        entries.put(username, new Entry(stored, digest(password), now + ttlNanos));
+    }
+
+    public void forget(String username) {
+        entries.remove(username);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /** Drop expired entries; if that frees nothing, drop one arbitrary entry */
+    private void evict(long now) {
+        boolean freed = entries.values().removeIf(e -> now - e.expiresAtNanos >= 0);
+        if (!freed) {
+            Iterator<String> it = entries.keySet().iterator();
+            if (it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    private byte[] digest(String password) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(pepper);
+            return sha.digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+}